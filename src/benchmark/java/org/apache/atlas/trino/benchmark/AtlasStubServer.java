@@ -0,0 +1,575 @@
+package org.apache.atlas.trino.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.atlas.model.discovery.AtlasSearchResult;
+import org.apache.atlas.model.discovery.SearchParameters;
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.atlas.model.instance.AtlasEntityHeader;
+import org.apache.atlas.model.instance.AtlasObjectId;
+import org.apache.atlas.model.instance.EntityMutationResponse;
+import org.apache.atlas.model.instance.EntityMutations.EntityOperation;
+import org.apache.atlas.type.AtlasType;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded stand-in for the Atlas v2 REST API, implementing the entity, relationship search and basic search calls the
+ * extractor makes. Every request can be delayed by latencyMs plus up to jitterMs, and fails with 503 with probability
+ * errorRate. Each call is recorded in StageLatencies as "atlas.&lt;operation&gt;", including the injected latency.
+ *
+ * Entities are kept with their typeName, qualifiedName, name and parent only. trino_column entities are acknowledged
+ * but not retained, so that the stub's own heap stays small next to the extractor's on large runs.
+ *
+ * With retainAttributes, all attributes are kept, updates merge the attributes sent into the stored ones as Atlas does,
+ * trino_column entities are retained and deleted along with their table, and a table read with relationships returns
+ * its columns as referred entities.
+ */
+public class AtlasStubServer {
+    private static final String API_PREFIX   = "/api/atlas/v2/";
+    private static final String NOT_RETAINED = "trino_column";
+
+    // relationship attribute pointing at the parent -> relationship attribute of the parent listing the children
+    private static final Map<String, String> PARENT_RELATIONS = new HashMap<>();
+
+    static {
+        PARENT_RELATIONS.put("trino_instance", "catalogs");
+        PARENT_RELATIONS.put("catalog", "schemas");
+        PARENT_RELATIONS.put("schema", "tables");
+        PARENT_RELATIONS.put("table", "columns");
+    }
+
+    private final long                     latencyMs;
+    private final long                     jitterMs;
+    private final double                   errorRate;
+    private final boolean                  retainAttributes;
+    private final StageLatencies           latencies;
+    private final HttpServer               server;
+    private final ExecutorService          executor;
+    private final Map<String, Stored>      entitiesByGuid = new ConcurrentHashMap<>();
+    private final Map<String, String>      guidByKey      = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> children       = new ConcurrentHashMap<>();
+    private final AtomicLong               requests       = new AtomicLong();
+    private final AtomicLong               injectedErrors = new AtomicLong();
+
+    public AtlasStubServer(int threads, long latencyMs, long jitterMs, double errorRate, StageLatencies latencies) throws IOException {
+        this(threads, latencyMs, jitterMs, errorRate, false, latencies);
+    }
+
+    public AtlasStubServer(int threads, long latencyMs, long jitterMs, double errorRate, boolean retainAttributes, StageLatencies latencies) throws IOException {
+        this.latencyMs        = latencyMs;
+        this.jitterMs         = jitterMs;
+        this.errorRate        = errorRate;
+        this.retainAttributes = retainAttributes;
+        this.latencies        = latencies;
+        this.executor         = Executors.newFixedThreadPool(threads);
+        this.server           = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public int getEntityCount() {
+        return entitiesByGuid.size();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long   start     = System.nanoTime();
+        String method    = exchange.getRequestMethod();
+        String path      = exchange.getRequestURI().getPath();
+        String operation = "unknown";
+
+        requests.incrementAndGet();
+
+        try {
+            path = path.startsWith(API_PREFIX) ? path.substring(API_PREFIX.length()) : path;
+            path = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+
+            Map<String, List<String>> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String                    body   = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+
+            injectLatency();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+
+                operation = "injectedError";
+
+                respond(exchange, 503, error("ATLAS-503-00-001", "Injected failure"));
+            } else if (method.equals("GET") && path.startsWith("entity/uniqueAttribute/type/")) {
+                operation = "getEntityByAttribute";
+
+                Stored  stored               = findByKey(path.substring("entity/uniqueAttribute/type/".length()), first(params, "attr:qualifiedName"));
+                boolean ignoreRelationships = "true".equals(first(params, "ignoreRelationships")) || "true".equals(first(params, "ignoreRelationship"));
+
+                if (stored == null) {
+                    respond(exchange, 404, error("ATLAS-404-00-009", "Instance not found"));
+                } else {
+                    respond(exchange, 200, AtlasType.toJson(retainAttributes && !ignoreRelationships ? withChildren(stored, "columns") : new AtlasEntity.AtlasEntityWithExtInfo(stored.toEntity())));
+                }
+            } else if (method.equals("GET") && path.startsWith("entity/bulk/uniqueAttribute/type/")) {
+                operation = "getEntitiesByAttribute";
+
+                String                               typeName = path.substring("entity/bulk/uniqueAttribute/type/".length());
+                AtlasEntity.AtlasEntitiesWithExtInfo ret      = new AtlasEntity.AtlasEntitiesWithExtInfo();
+
+                for (Map.Entry<String, List<String>> param : params.entrySet()) {
+                    if (param.getKey().startsWith("attr_") && param.getKey().endsWith(":qualifiedName")) {
+                        Stored stored = findByKey(typeName, param.getValue().get(0));
+
+                        if (stored != null) {
+                            ret.addEntity(stored.toEntity());
+                        }
+                    }
+                }
+
+                respond(exchange, 200, AtlasType.toJson(ret));
+            } else if (method.equals("GET") && path.startsWith("entity/guid/")) {
+                operation = "getEntityByGuid";
+
+                Stored stored = entitiesByGuid.get(path.substring("entity/guid/".length()));
+
+                if (stored == null) {
+                    respond(exchange, 404, error("ATLAS-404-00-005", "Given instance guid is invalid/not found"));
+                } else {
+                    respond(exchange, 200, AtlasType.toJson(new AtlasEntity.AtlasEntityWithExtInfo(stored.toEntity())));
+                }
+            } else if (method.equals("GET") && path.equals("entity/bulk")) {
+                operation = "getEntitiesByGuids";
+
+                AtlasEntity.AtlasEntitiesWithExtInfo ret = new AtlasEntity.AtlasEntitiesWithExtInfo();
+
+                for (String guid : params.getOrDefault("guid", Collections.emptyList())) {
+                    Stored stored = entitiesByGuid.get(guid);
+
+                    if (stored != null) {
+                        ret.addEntity(stored.toEntity());
+                    }
+                }
+
+                respond(exchange, 200, AtlasType.toJson(ret));
+            } else if (method.equals("POST") && path.equals("entity")) {
+                operation = "createEntity";
+
+                AtlasEntity.AtlasEntityWithExtInfo entity = AtlasType.fromJson(body, AtlasEntity.AtlasEntityWithExtInfo.class);
+
+                respond(exchange, 200, AtlasType.toJson(mutate(Collections.singletonList(entity.getEntity()), entity.getReferredEntities())));
+            } else if (method.equals("POST") && path.equals("entity/bulk")) {
+                operation = "createEntities";
+
+                AtlasEntity.AtlasEntitiesWithExtInfo entities = AtlasType.fromJson(body, AtlasEntity.AtlasEntitiesWithExtInfo.class);
+
+                respond(exchange, 200, AtlasType.toJson(mutate(entities.getEntities(), entities.getReferredEntities())));
+            } else if (method.equals("DELETE") && path.startsWith("entity/guid/")) {
+                operation = "deleteEntityByGuid";
+
+                respond(exchange, 200, AtlasType.toJson(delete(Collections.singletonList(path.substring("entity/guid/".length())))));
+            } else if (method.equals("DELETE") && path.equals("entity/bulk")) {
+                operation = "deleteEntitiesByGuids";
+
+                respond(exchange, 200, AtlasType.toJson(delete(params.getOrDefault("guid", Collections.emptyList()))));
+            } else if (method.equals("GET") && path.equals("search/relationship")) {
+                operation = "relationshipSearch";
+
+                respond(exchange, 200, AtlasType.toJson(relationshipSearch(first(params, "guid"), first(params, "relation"), intParam(params, "limit", 25), intParam(params, "offset", 0))));
+            } else if (path.equals("search/basic")) {
+                operation = "basicSearch";
+
+                respond(exchange, 200, AtlasType.toJson(basicSearch(method.equals("POST") ? AtlasType.fromJson(body, SearchParameters.class) : null, params)));
+            } else {
+                respond(exchange, 400, error("ATLAS-400-00-001", "Not supported by the stub: " + method + " " + path));
+            }
+        } catch (RuntimeException e) {
+            operation = "serverError";
+
+            respond(exchange, 500, error("ATLAS-500-00-001", String.valueOf(e)));
+        } finally {
+            latencies.record("atlas." + operation, System.nanoTime() - start);
+        }
+    }
+
+    private EntityMutationResponse mutate(List<AtlasEntity> entities, Map<String, AtlasEntity> referredEntities) {
+        List<AtlasEntity> all = new ArrayList<>();
+
+        if (entities != null) {
+            all.addAll(entities);
+        }
+
+        if (referredEntities != null) {
+            all.addAll(referredEntities.values());
+        }
+
+        EntityMutationResponse ret             = new EntityMutationResponse();
+        Map<String, String>    guidAssignments = new HashMap<>();
+
+        synchronized (this) {
+            // assign GUIDs first, so that relationships between entities of the request can be resolved
+            for (AtlasEntity entity : all) {
+                String guid     = entity.getGuid();
+                String existing = guid != null && entitiesByGuid.containsKey(guid) ? guid : guidByKey.get(key(entity.getTypeName(), qualifiedName(entity)));
+
+                if (existing != null) {
+                    if (!existing.equals(guid)) {
+                        guidAssignments.put(guid, existing);
+                    }
+
+                    ret.addEntity(EntityOperation.UPDATE, header(entity, existing));
+                } else {
+                    String newGuid = UUID.randomUUID().toString();
+
+                    if (guid != null) {
+                        guidAssignments.put(guid, newGuid);
+                    }
+
+                    ret.addEntity(EntityOperation.CREATE, header(entity, newGuid));
+                }
+            }
+
+            for (AtlasEntity entity : all) {
+                String guid = guidAssignments.getOrDefault(entity.getGuid(), entity.getGuid());
+
+                if (entitiesByGuid.containsKey(guid)) {
+                    if (retainAttributes && entity.getAttributes() != null) {
+                        entitiesByGuid.get(guid).attributes.putAll(entity.getAttributes());
+                    }
+
+                    continue;
+                }
+
+                if (NOT_RETAINED.equals(entity.getTypeName()) && !retainAttributes) {
+                    continue;
+                }
+
+                Stored stored = new Stored(entity.getTypeName(), guid, qualifiedName(entity), (String) entity.getAttribute("name"), parentKey(entity, guidAssignments), retainAttributes ? entity.getAttributes() : null);
+
+                entitiesByGuid.put(guid, stored);
+                guidByKey.put(key(stored.typeName, stored.qualifiedName), guid);
+
+                if (stored.parentKey != null) {
+                    children.computeIfAbsent(stored.parentKey, k -> Collections.synchronizedSet(new LinkedHashSet<>())).add(guid);
+                }
+            }
+        }
+
+        ret.setGuidAssignments(guidAssignments);
+
+        return ret;
+    }
+
+    private EntityMutationResponse delete(Collection<String> guids) {
+        EntityMutationResponse ret = new EntityMutationResponse();
+
+        synchronized (this) {
+            Deque<String> pending = new ArrayDeque<>(guids);
+
+            while (!pending.isEmpty()) {
+                String guid   = pending.poll();
+                Stored stored = entitiesByGuid.remove(guid);
+
+                if (stored != null) {
+                    guidByKey.remove(key(stored.typeName, stored.qualifiedName), guid);
+
+                    if (stored.parentKey != null && children.containsKey(stored.parentKey)) {
+                        children.get(stored.parentKey).remove(guid);
+                    }
+
+                    ret.addEntity(EntityOperation.DELETE, stored.toHeader());
+
+                    // columns are owned by their table, as in Atlas
+                    Set<String> columns = children.remove(key(guid, "columns"));
+
+                    if (columns != null) {
+                        pending.addAll(columns);
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    // the entity with its children under the given relationship, as relationship attribute and as referred entities
+    private AtlasEntity.AtlasEntityWithExtInfo withChildren(Stored stored, String relation) {
+        AtlasEntity                        entity = stored.toEntity();
+        AtlasEntity.AtlasEntityWithExtInfo ret    = new AtlasEntity.AtlasEntityWithExtInfo(entity);
+        List<AtlasObjectId>                ids    = new ArrayList<>();
+        Set<String>                        guids  = children.get(key(stored.guid, relation));
+
+        if (guids != null) {
+            synchronized (guids) {
+                for (String guid : guids) {
+                    Stored child = entitiesByGuid.get(guid);
+
+                    if (child != null) {
+                        ids.add(new AtlasObjectId(child.guid, child.typeName));
+                        ret.addReferredEntity(child.toEntity());
+                    }
+                }
+            }
+        }
+
+        entity.setRelationshipAttribute(relation, ids);
+
+        // the reference to the parent, as Atlas returns it along with the other relationships
+        if (stored.parentKey != null) {
+            String[] parentKey = stored.parentKey.split("\t");
+            Stored   parent    = entitiesByGuid.get(parentKey[0]);
+
+            for (Map.Entry<String, String> parentRelation : PARENT_RELATIONS.entrySet()) {
+                if (parent != null && parentRelation.getValue().equals(parentKey[1])) {
+                    entity.setRelationshipAttribute(parentRelation.getKey(), new AtlasObjectId(parent.guid, parent.typeName));
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private AtlasSearchResult relationshipSearch(String guid, String relation, int limit, int offset) {
+        AtlasSearchResult       ret     = new AtlasSearchResult();
+        List<AtlasEntityHeader> headers = new ArrayList<>();
+        Set<String>             guids   = children.get(key(guid, relation));
+
+        if (guids != null) {
+            List<String> page;
+
+            synchronized (guids) {
+                page = new ArrayList<>(guids);
+            }
+
+            for (int i = offset; i < Math.min(page.size(), offset + limit); i++) {
+                Stored stored = entitiesByGuid.get(page.get(i));
+
+                if (stored != null) {
+                    headers.add(stored.toHeader());
+                }
+            }
+        }
+
+        ret.setEntities(headers);
+
+        return ret;
+    }
+
+    private AtlasSearchResult basicSearch(SearchParameters searchParameters, Map<String, List<String>> params) {
+        AtlasSearchResult       ret           = new AtlasSearchResult();
+        List<AtlasEntityHeader> headers       = new ArrayList<>();
+        String                  typeName      = searchParameters != null ? searchParameters.getTypeName() : first(params, "typeName");
+        Object                  qualifiedName = null;
+
+        if (searchParameters != null && searchParameters.getEntityFilters() != null) {
+            qualifiedName = searchParameters.getEntityFilters().getAttributeValue();
+        }
+
+        if (qualifiedName != null) {
+            Stored stored = findByKey(typeName, qualifiedName.toString());
+
+            if (stored != null) {
+                headers.add(stored.toHeader());
+            }
+        } else {
+            for (Stored stored : entitiesByGuid.values()) {
+                if (stored.typeName.equals(typeName)) {
+                    headers.add(stored.toHeader());
+                }
+            }
+        }
+
+        ret.setEntities(headers);
+
+        return ret;
+    }
+
+    private String parentKey(AtlasEntity entity, Map<String, String> guidAssignments) {
+        if (entity.getRelationshipAttributes() == null) {
+            return null;
+        }
+
+        for (Map.Entry<String, String> relation : PARENT_RELATIONS.entrySet()) {
+            Object parent = entity.getRelationshipAttribute(relation.getKey());
+
+            if (parent instanceof Map) {
+                Object guid = ((Map<?, ?>) parent).get("guid");
+
+                if (guid != null) {
+                    return key(guidAssignments.getOrDefault(guid.toString(), guid.toString()), relation.getValue());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Stored findByKey(String typeName, String qualifiedName) {
+        String guid = qualifiedName == null ? null : guidByKey.get(key(typeName, qualifiedName));
+
+        return guid == null ? null : entitiesByGuid.get(guid);
+    }
+
+    private void injectLatency() {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static AtlasEntityHeader header(AtlasEntity entity, String guid) {
+        Map<String, Object> attributes = new HashMap<>();
+
+        attributes.put("qualifiedName", qualifiedName(entity));
+        attributes.put("name", entity.getAttribute("name"));
+
+        return new AtlasEntityHeader(entity.getTypeName(), guid, attributes);
+    }
+
+    private static String qualifiedName(AtlasEntity entity) {
+        Object ret = entity.getAttribute("qualifiedName");
+
+        return ret == null ? null : ret.toString();
+    }
+
+    private static String key(String first, String second) {
+        return first + "\t" + second;
+    }
+
+    private static String error(String errorCode, String errorMessage) {
+        Map<String, String> ret = new LinkedHashMap<>();
+
+        ret.put("errorCode", errorCode);
+        ret.put("errorMessage", errorMessage);
+
+        return AtlasType.toJson(ret);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, List<String>> ret = new HashMap<>();
+
+        if (rawQuery != null) {
+            for (String param : rawQuery.split("&")) {
+                int    idx   = param.indexOf('=');
+                String name  = URLDecoder.decode(idx < 0 ? param : param.substring(0, idx), "UTF-8");
+                String value = idx < 0 ? "" : URLDecoder.decode(param.substring(idx + 1), "UTF-8");
+
+                ret.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+            }
+        }
+
+        return ret;
+    }
+
+    private static String first(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static int intParam(Map<String, List<String>> params, String name, int defaultValue) {
+        String value = first(params, name);
+
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static class Stored {
+        private final String typeName;
+        private final String guid;
+        private final String qualifiedName;
+        private final String name;
+        private final String parentKey;
+        private final Map<String, Object> attributes;
+
+        Stored(String typeName, String guid, String qualifiedName, String name, String parentKey, Map<String, Object> attributes) {
+            this.typeName      = typeName;
+            this.guid          = guid;
+            this.qualifiedName = qualifiedName;
+            this.name          = name;
+            this.parentKey     = parentKey;
+            this.attributes    = attributes == null ? null : Collections.synchronizedMap(new HashMap<>(attributes));
+        }
+
+        AtlasEntity toEntity() {
+            AtlasEntity ret = new AtlasEntity(typeName);
+
+            ret.setGuid(guid);
+
+            if (attributes != null) {
+                synchronized (attributes) {
+                    ret.setAttributes(new HashMap<>(attributes));
+                }
+            }
+
+            ret.setAttribute("qualifiedName", qualifiedName);
+            ret.setAttribute("name", name);
+
+            return ret;
+        }
+
+        AtlasEntityHeader toHeader() {
+            Map<String, Object> attributes = new HashMap<>();
+
+            attributes.put("qualifiedName", qualifiedName);
+            attributes.put("name", name);
+
+            return new AtlasEntityHeader(typeName, guid, attributes);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.apache.atlas.trino.benchmark;
+
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.atlas.model.instance.AtlasEntityHeader;
+import org.apache.atlas.trino.client.AtlasClientHelper;
+import org.apache.atlas.trino.model.Catalog;
+import org.apache.atlas.trino.model.TrinoColumn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Synthetic Trino metadata and Atlas entities shaped like what the extractor reads and builds.
+ */
+public final class BenchmarkFixtures {
+    public static final String CATALOG   = "hive_catalog";
+    public static final String SCHEMA    = "sales";
+    public static final String TABLE     = "orders";
+    public static final String NAMESPACE = "cm";
+
+    private static final String[] DATA_TYPES = { "bigint", "varchar", "double", "timestamp(3)", "boolean", "decimal(18,2)", "date", "array(varchar)" };
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Catalog catalog() {
+        return new Catalog(CATALOG, "hive", false, null, NAMESPACE);
+    }
+
+    public static AtlasEntity schemaEntity(Catalog catalog) {
+        AtlasEntity ret = new AtlasEntity(AtlasClientHelper.TRINO_SCHEMA);
+
+        ret.setGuid(UUID.randomUUID().toString());
+        ret.setAttribute("qualifiedName", catalog.getName() + "." + SCHEMA + "@" + catalog.getInstanceName());
+        ret.setAttribute("name", SCHEMA);
+
+        return ret;
+    }
+
+    /**
+     * Columns in ordinal order, as returned by TrinoClientHelper.getTrinoColumns().
+     */
+    public static List<TrinoColumn> columns(int count) {
+        List<TrinoColumn> ret = new ArrayList<>(count);
+
+        for (int i = 1; i <= count; i++) {
+            ret.add(new TrinoColumn("column_" + i, DATA_TYPES[i % DATA_TYPES.length], i, i % 10 == 0 ? "0" : null, i % 3 != 0 ? "YES" : "NO"));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Builds the trino_table entity with its columns the way ExtractorService.processTable() does, for a table that
+     * doesn't exist in Atlas yet.
+     */
+    public static AtlasEntity.AtlasEntityWithExtInfo tableEntity(Catalog catalog, AtlasEntity schemaEntity, List<TrinoColumn> columns) throws Exception {
+        AtlasEntity.AtlasEntityWithExtInfo ret            = AtlasClientHelper.getTrinoTableEntity(catalog, SCHEMA, TABLE, schemaEntity, new HashMap<>());
+        List<AtlasEntity>                  columnEntities = new ArrayList<>(columns.size());
+
+        for (TrinoColumn column : columns) {
+            columnEntities.add(AtlasClientHelper.getTrinoColumnEntity(catalog, SCHEMA, TABLE, column, ret.getEntity()));
+        }
+
+        AtlasClientHelper.setTrinoTableColumns(ret, schemaEntity, columnEntities);
+
+        return ret;
+    }
+
+    public static List<String> tableNames(int count) {
+        List<String> ret = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            ret.add("table_" + i);
+        }
+
+        return ret;
+    }
+
+    /**
+     * trino_table headers as returned by a relationship search on the schema, one per name.
+     */
+    public static List<AtlasEntityHeader> tableHeaders(List<String> tableNames) {
+        List<AtlasEntityHeader> ret = new ArrayList<>(tableNames.size());
+
+        for (String tableName : tableNames) {
+            AtlasEntityHeader header = new AtlasEntityHeader(AtlasClientHelper.TRINO_TABLE);
+
+            header.setGuid(UUID.randomUUID().toString());
+            header.setAttribute("name", tableName);
+            header.setAttribute("qualifiedName", CATALOG + "." + SCHEMA + "." + tableName + "@" + NAMESPACE);
+
+            ret.add(header);
+        }
+
+        return ret;
+    }
+}
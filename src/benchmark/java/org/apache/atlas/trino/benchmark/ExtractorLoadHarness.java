@@ -0,0 +1,219 @@
+package org.apache.atlas.trino.benchmark;
+
+import org.apache.atlas.trino.cli.ExtractorContext;
+import org.apache.atlas.trino.cli.ExtractorService;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.Options;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs ExtractorService end to end against SyntheticTrinoDriver and AtlasStubServer and reports throughput, calls per
+ * table, peak heap and per-stage latencies.
+ *
+ * Arguments are key=value pairs:
+ *   catalogs, schemas, tables, columns    shape of the synthetic Trino metadata (schemas per catalog, tables per
+ *                                         schema, columns per table); default 1, 10, 100, 20
+ *   runs                                  number of back to back extractions against the same Atlas; default 1
+ *   resume                                run with --resume, so that a run resumes the previous one if it failed;
+ *                                         default false
+ *   export.file                           write an Atlas import ZIP instead of calling the Atlas stub; use with runs=1
+ *   trino.latency.ms                      delay added to every Trino query; default 0
+ *   atlas.latency.ms, atlas.jitter.ms     delay added to every Atlas call; default 0, 0
+ *   atlas.error.rate                      probability of an Atlas call failing with 503; default 0
+ *   atlas.threads                         request threads of the Atlas stub; default 32
+ *   atlas.retain.attributes               keep all attributes and the columns in the Atlas stub, as needed to run with
+ *                                         atlas.trino.extractor.diff.enabled; default false
+ *   atlas.trino.*                         passed to the extractor configuration,
+ *                                         e.g. atlas.trino.extractor.write.parallelism=8
+ *
+ * e.g. java -Xmx2g -cp target/benchmarks.jar org.apache.atlas.trino.benchmark.ExtractorLoadHarness schemas=100 tables=1000 atlas.latency.ms=5
+ */
+public class ExtractorLoadHarness {
+    private static final long MB = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        Properties options = new Properties();
+
+        for (String arg : args) {
+            int idx = arg.indexOf('=');
+
+            if (idx <= 0) {
+                System.err.println("Invalid argument " + arg + "; expected key=value");
+                System.exit(2);
+            }
+
+            options.setProperty(arg.substring(0, idx), arg.substring(idx + 1));
+        }
+
+        StageLatencies       latencies = new StageLatencies();
+        SyntheticTrinoDriver trino     = new SyntheticTrinoDriver(intOption(options, "catalogs", 1), intOption(options, "schemas", 10), intOption(options, "tables", 100), intOption(options, "columns", 20), longOption(options, "trino.latency.ms", 0), latencies);
+        AtlasStubServer      atlas     = new AtlasStubServer(intOption(options, "atlas.threads", 32), longOption(options, "atlas.latency.ms", 0), longOption(options, "atlas.jitter.ms", 0), Double.parseDouble(options.getProperty("atlas.error.rate", "0")), Boolean.parseBoolean(options.getProperty("atlas.retain.attributes", "false")), latencies);
+        File                 workDir   = Files.createTempDirectory("trino-extractor-harness").toFile();
+        boolean              succeeded = true;
+
+        trino.register();
+        atlas.start();
+
+        writeConfiguration(workDir, options, trino, atlas);
+
+        List<String> cliArgs = new ArrayList<>();
+
+        if (Boolean.parseBoolean(options.getProperty("resume", "false"))) {
+            cliArgs.add("--resume");
+        }
+
+        if (options.getProperty("export.file") != null) {
+            cliArgs.add("--exportFile");
+            cliArgs.add(options.getProperty("export.file"));
+        }
+
+        Options          cliOptions = new Options().addOption("resume", false, "resume").addOption("exportFile", true, "exportFile");
+        ExtractorContext context    = new StubExtractorContext(new BasicParser().parse(cliOptions, cliArgs.toArray(new String[0])));
+
+        // one service for all runs, like the scheduled extractor, so later runs see warm clients and caches
+        try (ExtractorService service = new ExtractorService(context)) {
+            for (int run = 1; run <= intOption(options, "runs", 1); run++) {
+                succeeded &= run(run, service, trino, atlas, latencies);
+            }
+        } finally {
+            context.getAtlasConnector().close();
+            context.getTrinoConnector().close();
+
+            atlas.stop();
+            trino.deregister();
+        }
+
+        System.exit(succeeded ? 0 : 1);
+    }
+
+    private static boolean run(int run, ExtractorService service, SyntheticTrinoDriver trino, AtlasStubServer atlas, StageLatencies latencies) {
+        long         queriesBefore  = trino.getQueryCount();
+        long         requestsBefore = atlas.getRequestCount();
+        long         errorsBefore   = atlas.getInjectedErrorCount();
+        HeapSampler  heapSampler    = new HeapSampler();
+        boolean      succeeded;
+        String       failure        = null;
+
+        latencies.clear();
+        System.gc();
+        heapSampler.start();
+
+        long start = System.nanoTime();
+
+        try {
+            succeeded = service.execute();
+        } catch (Exception e) {
+            succeeded = false;
+            failure   = String.valueOf(e);
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        heapSampler.interrupt();
+
+        long tables   = trino.getTableCount();
+        long queries  = trino.getQueryCount() - queriesBefore;
+        long requests = atlas.getRequestCount() - requestsBefore;
+
+        System.out.printf("Run %d %s in %.1f s%s%n", run, succeeded ? "succeeded" : "FAILED", elapsedMs / 1000.0, failure != null ? ": " + failure : "");
+        System.out.printf("  tables          %d (%.1f tables/s)%n", tables, elapsedMs > 0 ? tables * 1000.0 / elapsedMs : 0);
+        System.out.printf("  trino queries   %d (%.3f per table)%n", queries, (double) queries / tables);
+        System.out.printf("  atlas calls     %d (%.3f per table), %d injected errors%n", requests, (double) requests / tables, atlas.getInjectedErrorCount() - errorsBefore);
+        System.out.printf("  atlas entities  %d retained by the stub%n", atlas.getEntityCount());
+        System.out.printf("  peak heap       %d MB%n", heapSampler.getPeakUsed() / MB);
+        System.out.println("  atlas limiter");
+
+        for (String line : ExtractorMetrics.toPrometheusText().split("\n")) {
+            if (line.startsWith("trino_extractor_atlas_limiter_")) {
+                System.out.println("    " + line.substring("trino_extractor_atlas_limiter_".length()));
+            }
+        }
+
+        System.out.println("  stage latencies");
+        System.out.print(latencies.report());
+
+        return succeeded;
+    }
+
+    private static void writeConfiguration(File workDir, Properties options, SyntheticTrinoDriver trino, AtlasStubServer atlas) throws Exception {
+        Properties   conf     = new Properties();
+        List<String> catalogs = trino.getCatalogNames();
+
+        conf.setProperty("atlas.rest.address", atlas.getUrl());
+        conf.setProperty("atlas.trino.jdbc.address", SyntheticTrinoDriver.URL_PREFIX + "harness");
+        conf.setProperty("atlas.trino.jdbc.user", "harness");
+        conf.setProperty("atlas.trino.namespace", "cm");
+        conf.setProperty("atlas.trino.catalog.registered", String.join(",", catalogs));
+        conf.setProperty("atlas.trino.extractor.state.dir", new File(workDir, "state").getAbsolutePath());
+
+        for (String catalog : catalogs) {
+            conf.setProperty("atlas.trino.catalog.hook.enabled." + catalog, "false");
+        }
+
+        for (Map.Entry<Object, Object> option : options.entrySet()) {
+            if (option.getKey().toString().startsWith("atlas.trino.")) {
+                conf.setProperty(option.getKey().toString(), option.getValue().toString());
+            }
+        }
+
+        try (OutputStream out = new FileOutputStream(new File(workDir, "atlas-application.properties"))) {
+            conf.store(out, "generated by " + ExtractorLoadHarness.class.getSimpleName());
+        }
+
+        System.setProperty("atlas.conf", workDir.getAbsolutePath());
+
+        System.out.printf("Trino: %s catalogs x %s schemas x %s tables x %s columns; Atlas: %s; state in %s%n", catalogs.size(), options.getProperty("schemas", "10"), options.getProperty("tables", "100"), options.getProperty("columns", "20"), atlas.getUrl(), workDir);
+    }
+
+    private static int intOption(Properties options, String name, int defaultValue) {
+        return Integer.parseInt(options.getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    private static long longOption(Properties options, String name, long defaultValue) {
+        return Long.parseLong(options.getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Samples used heap every 10 ms; the maximum seen is the peak heap of the run, garbage included.
+     */
+    private static class HeapSampler extends Thread {
+        private final MemoryMXBean memory   = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong   peakUsed = new AtomicLong();
+
+        HeapSampler() {
+            super("heap-sampler");
+
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peakUsed.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long getPeakUsed() {
+            return Math.max(peakUsed.get(), memory.getHeapMemoryUsage().getUsed());
+        }
+    }
+}
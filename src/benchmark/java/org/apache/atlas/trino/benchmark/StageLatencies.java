@@ -0,0 +1,90 @@
+package org.apache.atlas.trino.benchmark;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency samples per stage, kept in full so that percentiles are exact.
+ */
+public class StageLatencies {
+    private final Map<String, Samples> stages = new ConcurrentHashMap<>();
+
+    public void record(String stage, long nanos) {
+        stages.computeIfAbsent(stage, s -> new Samples()).add(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public long count(String stage) {
+        Samples samples = stages.get(stage);
+
+        return samples == null ? 0 : samples.size();
+    }
+
+    public long countByPrefix(String prefix) {
+        long ret = 0;
+
+        for (Map.Entry<String, Samples> entry : stages.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                ret += entry.getValue().size();
+            }
+        }
+
+        return ret;
+    }
+
+    public void clear() {
+        stages.clear();
+    }
+
+    /**
+     * One line per stage: count, p50, p99 and max in milliseconds.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, Samples> entry : new TreeMap<>(stages).entrySet()) {
+            long[] sorted = entry.getValue().sorted();
+
+            sb.append(String.format("  %-32s count=%-9d p50=%9.2f ms  p99=%9.2f ms  max=%9.2f ms%n", entry.getKey(), sorted.length, percentile(sorted, 50) / 1000.0, percentile(sorted, 99) / 1000.0, sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0));
+        }
+
+        return sb.toString();
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        int idx = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private static class Samples {
+        private long[] values = new long[1024];
+        private int    size;
+
+        synchronized void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size++] = value;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] sorted() {
+            long[] ret = Arrays.copyOf(values, size);
+
+            Arrays.sort(ret);
+
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.apache.atlas.trino.benchmark;
+
+import org.apache.atlas.model.instance.AtlasEntityHeader;
+import org.apache.atlas.trino.cli.ExtractorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the tables of a schema that exist in Atlas but no longer in Trino. Atlas holds tableCount tables,
+ * of which 1% have been dropped in Trino.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class StaleEntityDiffBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int tableCount;
+
+    private List<AtlasEntityHeader> tablesInAtlas;
+    private List<String>            tablesInTrino;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> tableNames = BenchmarkFixtures.tableNames(tableCount);
+
+        tablesInAtlas = BenchmarkFixtures.tableHeaders(tableNames);
+        tablesInTrino = new ArrayList<>(tableCount);
+
+        for (int i = 0; i < tableNames.size(); i++) {
+            if (i % 100 != 0) {
+                tablesInTrino.add(tableNames.get(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public Set<String> getStaleTables() {
+        return ExtractorService.getStaleEntityGuids(tablesInAtlas, tablesInTrino);
+    }
+}
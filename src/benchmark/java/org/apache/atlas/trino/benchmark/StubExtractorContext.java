@@ -0,0 +1,34 @@
+package org.apache.atlas.trino.benchmark;
+
+import org.apache.atlas.AtlasClientV2;
+import org.apache.atlas.AtlasException;
+import org.apache.atlas.trino.cli.ExtractorContext;
+import org.apache.atlas.trino.client.AtlasClientHelper;
+import org.apache.atlas.trino.client.AtlasImportZipWriter;
+import org.apache.atlas.trino.store.EntityGuidIndex;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.configuration.Configuration;
+
+import java.io.IOException;
+
+/**
+ * An ExtractorContext connecting to the AtlasStubServer at atlas.rest.address with fixed credentials, instead of
+ * reading them from the console, so that the harness runs unattended.
+ */
+public class StubExtractorContext extends ExtractorContext {
+    private static final String[] STUB_CREDENTIALS = { "admin", "admin" };
+
+    public StubExtractorContext(CommandLine cmd) throws AtlasException, IOException {
+        super(cmd);
+    }
+
+    @Override
+    protected AtlasClientHelper newAtlasClientHelper(Configuration atlasConf, EntityGuidIndex guidIndex, AtlasImportZipWriter exportWriter) throws IOException {
+        return new AtlasClientHelper(atlasConf, guidIndex, exportWriter) {
+            @Override
+            protected AtlasClientV2 getAtlasClient(Configuration conf) {
+                return new AtlasClientV2(conf.getStringArray("atlas.rest.address"), STUB_CREDENTIALS);
+            }
+        };
+    }
+}
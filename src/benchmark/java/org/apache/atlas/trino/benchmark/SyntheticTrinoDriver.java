@@ -0,0 +1,550 @@
+package org.apache.atlas.trino.benchmark;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process JDBC driver standing in for Trino. It answers the metadata queries of TrinoClientHelper, on
+ * information_schema or system.jdbc, and the DatabaseMetaData calls from synthetic catalogs of a fixed shape,
+ * generating rows lazily so that catalogs of millions of columns don't have to be held in memory. Every query is
+ * recorded in StageLatencies as "trino.&lt;table&gt;", from execution until the result set is closed.
+ */
+public class SyntheticTrinoDriver implements Driver {
+    public static final String URL_PREFIX = "jdbc:synthetic-trino:";
+
+    private static final Pattern  SOURCE      = Pattern.compile("FROM\\s+(\"(?:[^\"]|\"\")*\"|\\w+)\\.(\\w+)\\.(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern  EQUALS      = Pattern.compile("(\\w+)\\s*=\\s*\\?");
+    private static final String[] DATA_TYPES  = { "bigint", "varchar", "double", "timestamp(3)", "boolean", "decimal(18,2)", "date", "array(varchar)" };
+
+    // information_schema column -> system.jdbc column
+    private static final Map<String, String> JDBC_COLUMN_NAMES = new HashMap<>();
+
+    static {
+        JDBC_COLUMN_NAMES.put("catalog_name", "table_catalog");
+        JDBC_COLUMN_NAMES.put("schema_name", "table_schem");
+        JDBC_COLUMN_NAMES.put("table_catalog", "table_cat");
+        JDBC_COLUMN_NAMES.put("table_schema", "table_schem");
+        JDBC_COLUMN_NAMES.put("column_default", "column_def");
+        JDBC_COLUMN_NAMES.put("data_type", "type_name");
+    }
+
+    private final int            catalogCount;
+    private final int            schemaCount;
+    private final int            tableCount;
+    private final int            columnCount;
+    private final long           latencyMs;
+    private final StageLatencies latencies;
+    private final AtomicLong     queries = new AtomicLong();
+
+    public SyntheticTrinoDriver(int catalogCount, int schemaCount, int tableCount, int columnCount, long latencyMs, StageLatencies latencies) {
+        this.catalogCount = catalogCount;
+        this.schemaCount  = schemaCount;
+        this.tableCount   = tableCount;
+        this.columnCount  = columnCount;
+        this.latencyMs    = latencyMs;
+        this.latencies    = latencies;
+    }
+
+    public void register() throws SQLException {
+        DriverManager.registerDriver(this);
+    }
+
+    public void deregister() throws SQLException {
+        DriverManager.deregisterDriver(this);
+    }
+
+    public List<String> getCatalogNames() {
+        List<String> ret = new ArrayList<>();
+
+        for (int i = 0; i < catalogCount; i++) {
+            ret.add(name("catalog", i));
+        }
+
+        return ret;
+    }
+
+    public long getTableCount() {
+        return (long) catalogCount * schemaCount * tableCount;
+    }
+
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+
+        return proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "createStatement":
+                    return statement(Statement.class, null);
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, (String) args[0]);
+                case "getMetaData":
+                    return metaData();
+                case "isValid":
+                case "getAutoCommit":
+                    return true;
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private <T extends Statement> T statement(Class<T> type, String preparedSql) {
+        Map<Integer, String> params = new HashMap<>();
+
+        return proxy(type, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setString":
+                    params.put((Integer) args[0], (String) args[1]);
+                    return null;
+                case "setInt":
+                case "setLong":
+                    params.put((Integer) args[0], String.valueOf(args[1]));
+                    return null;
+                case "executeQuery":
+                    return executeQuery(args == null ? preparedSql : (String) args[0], params);
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    // the DatabaseMetaData calls, answered like the system.jdbc queries the Trino driver makes for them
+    private DatabaseMetaData metaData() {
+        return proxy(DatabaseMetaData.class, (proxy, method, args) -> {
+            long                start   = System.nanoTime();
+            Map<String, String> filters = new HashMap<>();
+
+            switch (method.getName()) {
+                case "getSearchStringEscape":
+                    return "\\";
+                case "getSchemas":
+                    if (args != null && args.length == 2) {
+                        filters.put("table_catalog", unescape((String) args[0]));
+                        filters.put("table_schem", unescape((String) args[1]));
+                    }
+                    return query("jdbc.schemas", null, filters, start);
+                case "getTables":
+                    filters.put("table_cat", unescape((String) args[0]));
+                    filters.put("table_schem", unescape((String) args[1]));
+                    filters.put("table_name", unescape((String) args[2]));
+                    return query("jdbc.tables", null, filters, start);
+                case "getColumns":
+                    filters.put("table_cat", unescape((String) args[0]));
+                    filters.put("table_schem", unescape((String) args[1]));
+                    filters.put("table_name", unescape((String) args[2]));
+                    return query("jdbc.columns", null, filters, start);
+                default:
+                    return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    private ResultSet executeQuery(String sql, Map<Integer, String> params) throws SQLException {
+        long    start  = System.nanoTime();
+        Matcher source = SOURCE.matcher(sql);
+
+        if (!source.find()) {
+            throw new SQLException("Unsupported query: " + sql);
+        }
+
+        String              catalog = unquote(source.group(1));
+        Map<String, String> filters = new HashMap<>();
+        Matcher             equals  = EQUALS.matcher(sql);
+
+        for (int i = 1; equals.find(); i++) {
+            filters.put(equals.group(1).toLowerCase(), params.get(i));
+        }
+
+        return query(source.group(2).toLowerCase() + "." + source.group(3).toLowerCase(), catalog, filters, start);
+    }
+
+    private ResultSet query(String source, String catalog, Map<String, String> filters, long start) throws SQLException {
+        String table = source.substring(source.indexOf('.') + 1);
+
+        queries.incrementAndGet();
+
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                throw new SQLException(e);
+            }
+        }
+
+        Iterator<Map<String, Object>> rows;
+
+        switch (source) {
+            case "metadata.catalogs":
+                rows = catalogs();
+                break;
+            case "information_schema.schemata":
+                rows = schemata(catalog, filters);
+                break;
+            case "information_schema.tables":
+                rows = tables(catalog, filters);
+                break;
+            case "information_schema.columns":
+                rows = columns(catalog, filters);
+                break;
+            case "jdbc.schemas":
+                rows = jdbcRows(filters.get("table_catalog"), cat -> schemata(cat, filter("schema_name", filters.get("table_schem"))));
+                break;
+            case "jdbc.tables":
+                rows = jdbcRows(filters.get("table_cat"), cat -> tables(cat, filter("table_schema", filters.get("table_schem"), "table_name", filters.get("table_name"))));
+                break;
+            case "jdbc.columns":
+                rows = jdbcRows(filters.get("table_cat"), cat -> columns(cat, filter("table_schema", filters.get("table_schem"), "table_name", filters.get("table_name"))));
+                break;
+            default:
+                throw new SQLException("Unsupported table: " + source);
+        }
+
+        return resultSet(rows, "trino." + table, start);
+    }
+
+    private Iterator<Map<String, Object>> catalogs() {
+        List<Map<String, Object>> ret = new ArrayList<>();
+
+        for (String catalog : getCatalogNames()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+
+            row.put("catalog_name", catalog);
+            row.put("connector_name", "memory");
+
+            ret.add(row);
+        }
+
+        return ret.iterator();
+    }
+
+    private Iterator<Map<String, Object>> schemata(String catalog, Map<String, String> filters) {
+        int[] schemas = indices("schema", isCatalog(catalog) ? schemaCount : 0, filters.get("schema_name"));
+
+        return generate(schemas.length, i -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+
+            row.put("catalog_name", catalog);
+            row.put("schema_name", name("schema", schemas[(int) i]));
+
+            return row;
+        });
+    }
+
+    private Iterator<Map<String, Object>> tables(String catalog, Map<String, String> filters) {
+        int[] schemas = indices("schema", isCatalog(catalog) ? schemaCount : 0, filters.get("table_schema"));
+        int[] tables  = indices("table", tableCount, filters.get("table_name"));
+
+        return generate((long) schemas.length * tables.length, i -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+
+            row.put("table_catalog", catalog);
+            row.put("table_schema", name("schema", schemas[(int) (i / tables.length)]));
+            row.put("table_name", name("table", tables[(int) (i % tables.length)]));
+            row.put("table_type", "BASE TABLE");
+
+            return row;
+        });
+    }
+
+    private Iterator<Map<String, Object>> columns(String catalog, Map<String, String> filters) {
+        int[] schemas   = indices("schema", isCatalog(catalog) ? schemaCount : 0, filters.get("table_schema"));
+        int[] tables    = indices("table", tableCount, filters.get("table_name"));
+        long  perSchema = (long) tables.length * columnCount;
+
+        return generate(schemas.length * perSchema, i -> {
+            Map<String, Object> row    = new LinkedHashMap<>();
+            int                 column = (int) (i % columnCount);
+
+            row.put("table_catalog", catalog);
+            row.put("table_schema", name("schema", schemas[(int) (i / perSchema)]));
+            row.put("table_name", name("table", tables[(int) (i % perSchema / columnCount)]));
+            row.put("column_name", name("column", column));
+            row.put("ordinal_position", column + 1);
+            row.put("column_default", column % 10 == 0 ? "0" : null);
+            row.put("is_nullable", column % 3 == 0 ? "NO" : "YES");
+            row.put("data_type", DATA_TYPES[column % DATA_TYPES.length]);
+
+            return row;
+        });
+    }
+
+    /**
+     * The information_schema rows of the catalogs matching catalogFilter, or of all catalogs, with the columns named
+     * as in system.jdbc.
+     */
+    private Iterator<Map<String, Object>> jdbcRows(String catalogFilter, Function<String, Iterator<Map<String, Object>>> catalogRows) {
+        Iterator<String> catalogs = catalogFilter != null ? (isCatalog(catalogFilter) ? Collections.singletonList(catalogFilter) : Collections.<String>emptyList()).iterator() : getCatalogNames().iterator();
+
+        return new Iterator<Map<String, Object>>() {
+            private Iterator<Map<String, Object>> rows = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!rows.hasNext() && catalogs.hasNext()) {
+                    rows = catalogRows.apply(catalogs.next());
+                }
+
+                return rows.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                Map<String, Object> ret = new LinkedHashMap<>();
+
+                for (Map.Entry<String, Object> entry : rows.next().entrySet()) {
+                    ret.put(JDBC_COLUMN_NAMES.getOrDefault(entry.getKey(), entry.getKey()), entry.getValue());
+                }
+
+                return ret;
+            }
+        };
+    }
+
+    private static Map<String, String> filter(String... namesAndValues) {
+        Map<String, String> ret = new HashMap<>();
+
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (namesAndValues[i + 1] != null) {
+                ret.put(namesAndValues[i], namesAndValues[i + 1]);
+            }
+        }
+
+        return ret;
+    }
+
+    // a DatabaseMetaData name pattern without its escapes; the extractor escapes every wildcard of a name
+    private static String unescape(String pattern) {
+        return pattern == null ? null : pattern.replaceAll("\\\\(.)", "$1");
+    }
+
+    private boolean isCatalog(String catalog) {
+        return indices("catalog", catalogCount, catalog).length > 0;
+    }
+
+    private ResultSet resultSet(Iterator<Map<String, Object>> rows, String stage, long start) {
+        Object[] state = new Object[2]; // current row, last value read
+
+        return proxy(ResultSet.class, new InvocationHandler() {
+            private boolean closed;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "next":
+                        state[0] = rows.hasNext() ? rows.next() : null;
+                        return state[0] != null;
+                    case "getString":
+                        state[1] = value(state, args[0]);
+                        return state[1] == null ? null : state[1].toString();
+                    case "getObject":
+                        state[1] = value(state, args[0]);
+                        return state[1];
+                    case "getInt":
+                        state[1] = value(state, args[0]);
+                        return state[1] == null ? 0 : ((Number) state[1]).intValue();
+                    case "getLong":
+                        state[1] = value(state, args[0]);
+                        return state[1] == null ? 0L : ((Number) state[1]).longValue();
+                    case "wasNull":
+                        return state[1] == null;
+                    case "isClosed":
+                        return closed;
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+
+                            latencies.record(stage, System.nanoTime() - start);
+                        }
+                        return null;
+                    default:
+                        return defaultValue(proxy, method, args);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object value(Object[] state, Object column) throws SQLException {
+        Map<String, Object> row = (Map<String, Object>) state[0];
+
+        if (row == null) {
+            throw new SQLException("No current row");
+        }
+
+        if (column instanceof Integer) {
+            return new ArrayList<>(row.values()).get((Integer) column - 1);
+        }
+
+        String name = column.toString().toLowerCase();
+
+        if (!row.containsKey(name)) {
+            throw new SQLException("Column not found: " + column);
+        }
+
+        return row.get(name);
+    }
+
+    /**
+     * Indices of the names prefix_0 .. prefix_(count-1), or only of filter when given.
+     */
+    private static int[] indices(String prefix, int count, String filter) {
+        if (filter == null) {
+            int[] ret = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                ret[i] = i;
+            }
+
+            return ret;
+        }
+
+        if (filter.startsWith(prefix + "_")) {
+            try {
+                int idx = Integer.parseInt(filter.substring(prefix.length() + 1));
+
+                if (idx >= 0 && idx < count && name(prefix, idx).equals(filter)) {
+                    return new int[] { idx };
+                }
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+
+        return new int[0];
+    }
+
+    // zero-padded, so that names sort in the order they are generated, like ORDER BY would return them
+    private static String name(String prefix, int idx) {
+        return String.format("%s_%06d", prefix, idx);
+    }
+
+    private static String unquote(String identifier) {
+        if (identifier.startsWith("\"")) {
+            return identifier.substring(1, identifier.length() - 1).replace("\"\"", "\"");
+        }
+
+        return identifier;
+    }
+
+    private static Iterator<Map<String, Object>> generate(long count, RowGenerator generator) {
+        return new Iterator<Map<String, Object>>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+
+                return generator.row(next++);
+            }
+        };
+    }
+
+    private interface RowGenerator {
+        Map<String, Object> row(long idx);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SyntheticTrinoDriver.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    /**
+     * Answers Object methods and anything the stand-in doesn't care about, like the connection settings the pool
+     * applies, with the default value of the return type.
+     */
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Synthetic" + method.getDeclaringClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+
+        Class<?> type = method.getReturnType();
+
+        if (type.isPrimitive() && type != void.class) {
+            return Array.get(Array.newInstance(type, 1), 0);
+        } else if (type == Map.class) {
+            return Collections.emptyMap();
+        }
+
+        return null;
+    }
+}
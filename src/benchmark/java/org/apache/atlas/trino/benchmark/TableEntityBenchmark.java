@@ -0,0 +1,93 @@
+package org.apache.atlas.trino.benchmark;
+
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.atlas.trino.client.AtlasClientHelper;
+import org.apache.atlas.trino.model.Catalog;
+import org.apache.atlas.trino.model.TrinoColumn;
+import org.apache.atlas.type.AtlasType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the columns of one Trino table into the trino_table/trino_column entities written to Atlas:
+ * building the entities (qualifiedNames included), serializing them to JSON as the batch writer does, and clearing
+ * the relationship attributes of an entity returned by Atlas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableEntityBenchmark {
+    @Param({ "10", "100", "1000", "10000" })
+    public int columnCount;
+
+    private Catalog                            catalog;
+    private AtlasEntity                        schemaEntity;
+    private List<TrinoColumn>                  columns;
+    private AtlasEntity.AtlasEntityWithExtInfo tableEntity;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        catalog      = BenchmarkFixtures.catalog();
+        schemaEntity = BenchmarkFixtures.schemaEntity(catalog);
+        columns      = BenchmarkFixtures.columns(columnCount);
+        tableEntity  = BenchmarkFixtures.tableEntity(catalog, schemaEntity, columns);
+    }
+
+    @Benchmark
+    public AtlasEntity.AtlasEntityWithExtInfo buildTableEntity() throws Exception {
+        return BenchmarkFixtures.tableEntity(catalog, schemaEntity, columns);
+    }
+
+    /**
+     * Like buildTableEntity, but with the column metadata created per call as a Trino read creates it.
+     */
+    @Benchmark
+    public AtlasEntity.AtlasEntityWithExtInfo readAndBuildTableEntity() throws Exception {
+        return BenchmarkFixtures.tableEntity(catalog, schemaEntity, BenchmarkFixtures.columns(columnCount));
+    }
+
+    @Benchmark
+    public String serializeTableEntity() {
+        return AtlasType.toJson(tableEntity);
+    }
+
+    @Benchmark
+    public String serializeBatch() {
+        AtlasEntity.AtlasEntitiesWithExtInfo batch = new AtlasEntity.AtlasEntitiesWithExtInfo(tableEntity);
+
+        return AtlasType.toJson(batch);
+    }
+
+    @State(Scope.Thread)
+    public static class CreatedTable {
+        private AtlasEntity.AtlasEntityWithExtInfo entity;
+
+        @Setup(Level.Invocation)
+        public void setUp(TableEntityBenchmark benchmark) throws Exception {
+            entity = BenchmarkFixtures.tableEntity(benchmark.catalog, benchmark.schemaEntity, benchmark.columns);
+        }
+    }
+
+    @Benchmark
+    public AtlasEntity.AtlasEntityWithExtInfo clearRelationshipAttributes(CreatedTable createdTable) {
+        AtlasClientHelper.clearRelationshipAttributes(createdTable.entity);
+
+        return createdTable.entity;
+    }
+}
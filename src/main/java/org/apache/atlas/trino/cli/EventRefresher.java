@@ -0,0 +1,314 @@
+package org.apache.atlas.trino.cli;
+
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.atlas.trino.model.MetadataChange;
+import org.apache.atlas.trino.store.EventSpool;
+import org.apache.atlas.type.AtlasType;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Refreshes the schemas and tables changed by DDL statements as Trino reports them, instead of crawling all catalogs.
+ * The records are the query completed events of a Trino event listener, one JSON object per line, in the files of a
+ * spool directory. The schema or table a CREATE, ALTER, DROP or RENAME statement changed is taken from the statement
+ * text, resolved against the session catalog and schema of the query, or else from the query's output.
+ *
+ * The first change read opens a window of events.coalesce.window.ms in which further changes are collected; the
+ * changes of the window, each schema and table once, are then refreshed together. The spool offsets are committed
+ * after a successful refresh only, so that the changes of a failed one are read and refreshed again.
+ */
+public class EventRefresher implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(EventRefresher.class);
+
+    private static final String EVENTS_POLL_INTERVAL_MS     = "atlas.trino.extractor.events.poll.interval.ms";
+    private static final String EVENTS_COALESCE_WINDOW_MS   = "atlas.trino.extractor.events.coalesce.window.ms";
+    private static final String EVENTS_MAX_RECORDS_PER_POLL = "atlas.trino.extractor.events.max.records.per.poll";
+    private static final String EVENT_SPOOL_OFFSETS_FILE    = "event-spool-offsets.tsv";
+    private static final String QUERY_STATE_FINISHED        = "FINISHED";
+
+    private static final String  NAME       = "((?:\"(?:[^\"]|\"\")+\"|[\\w$@:-]+)(?:\\s*\\.\\s*(?:\"(?:[^\"]|\"\")+\"|[\\w$@:-]+)){0,2})";
+    private static final String  RENAMED    = "(?:\\s+RENAME\\s+TO\\s+" + NAME + ")?";
+    private static final Pattern TABLE_DDL  = Pattern.compile("^\\s*(?:CREATE(?:\\s+OR\\s+REPLACE)?|DROP|ALTER)(?:\\s+MATERIALIZED)?\\s+(?:TABLE|VIEW)(?:\\s+IF(?:\\s+NOT)?\\s+EXISTS)?\\s+" + NAME + RENAMED, Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCHEMA_DDL = Pattern.compile("^\\s*(?:CREATE|DROP|ALTER)\\s+SCHEMA(?:\\s+IF(?:\\s+NOT)?\\s+EXISTS)?\\s+" + NAME + RENAMED, Pattern.CASE_INSENSITIVE);
+    private static final Pattern NAME_PART  = Pattern.compile("\"((?:[^\"]|\"\")+)\"|([^\\s.\"]+)");
+
+    private final ExtractorService service;
+    private final File             spoolDir;
+    private final EventSpool       spool;
+    private final long             pollIntervalMs;
+    private final long             coalesceWindowMs;
+    private final Thread           thread;
+
+    private volatile boolean stopped;
+
+    public EventRefresher(ExtractorService service, ExtractorContext context) throws IOException {
+        Configuration atlasConf = context.getAtlasConf();
+
+        this.service          = service;
+        this.spoolDir         = context.getEventSpoolDir();
+        this.spool            = new EventSpool(spoolDir, new File(context.getStateDir(), EVENT_SPOOL_OFFSETS_FILE), atlasConf.getInt(EVENTS_MAX_RECORDS_PER_POLL, 10000));
+        this.pollIntervalMs   = atlasConf.getLong(EVENTS_POLL_INTERVAL_MS, 1000);
+        this.coalesceWindowMs = atlasConf.getLong(EVENTS_COALESCE_WINDOW_MS, 5000);
+        this.thread           = new Thread(this::run, "event-refresher");
+    }
+
+    public void start() {
+        thread.start();
+
+        LOG.info("Refreshing changed schemas and tables from the events in {}", spoolDir);
+    }
+
+    /**
+     * Stops reading events; a refresh in progress is allowed to finish, and changes collected but not refreshed yet
+     * are read again on the next start.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            stopped = true;
+
+            notifyAll();
+        }
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            try {
+                Set<MetadataChange> changes = new LinkedHashSet<>();
+
+                readChanges(changes);
+
+                if (changes.isEmpty()) {
+                    sleep(pollIntervalMs);
+
+                    continue;
+                }
+
+                // collect the changes that follow within the window, e.g. the ALTERs after a CREATE, into one refresh
+                long windowEnd = System.currentTimeMillis() + coalesceWindowMs;
+
+                for (long now = System.currentTimeMillis(); now < windowEnd && !stopped; now = System.currentTimeMillis()) {
+                    sleep(Math.min(pollIntervalMs, windowEnd - now));
+
+                    readChanges(changes);
+                }
+
+                if (stopped) {
+                    break;
+                }
+
+                ExtractorMetrics.counter("events_changes_total").add(changes.size());
+
+                if (service.refresh(changes)) {
+                    spool.commit();
+                } else {
+                    LOG.error("Failed to refresh {} changed schemas and tables; retrying in {} ms", changes.size(), coalesceWindowMs);
+
+                    spool.rollback();
+
+                    sleep(coalesceWindowMs);
+                }
+            } catch (InterruptedException e) {
+                LOG.warn("Event refresher interrupted");
+
+                break;
+            } catch (Exception e) {
+                LOG.error("Failed to refresh from the events in {}; retrying in {} ms", spoolDir, coalesceWindowMs, e);
+
+                spool.rollback();
+
+                try {
+                    sleep(coalesceWindowMs);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // waits until the time is up or close() is called
+    private synchronized void sleep(long ms) throws InterruptedException {
+        if (!stopped) {
+            wait(ms);
+        }
+    }
+
+    private void readChanges(Set<MetadataChange> changes) throws IOException {
+        for (String record : spool.poll()) {
+            List<MetadataChange> recordChanges = toChanges(record);
+
+            ExtractorMetrics.counter("events_read_total").increment();
+
+            if (recordChanges.isEmpty()) {
+                ExtractorMetrics.counter("events_ignored_total").increment();
+            } else {
+                changes.addAll(recordChanges);
+            }
+        }
+    }
+
+    /**
+     * Returns the schemas and tables changed by the query of a query completed event; empty for a query that failed,
+     * did not change any schema or table, or a record that is not a query completed event.
+     */
+    static List<MetadataChange> toChanges(String record) {
+        Map<String, Object> event;
+
+        try {
+            event = AtlasType.fromJson(record, Map.class);
+        } catch (Exception e) {
+            LOG.warn("Skipping malformed event record: {}", StringUtils.abbreviate(record, 200));
+
+            return Collections.emptyList();
+        }
+
+        if (event == null || event.get("failureInfo") != null) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Object> metadata = getMap(event, "metadata");
+        Map<String, Object> context  = getMap(event, "context");
+        String              state    = getString(metadata, "queryState");
+        String              query    = getString(metadata, "query");
+
+        if (state != null && !QUERY_STATE_FINISHED.equals(state)) {
+            return Collections.emptyList();
+        }
+
+        List<MetadataChange> ret            = new ArrayList<>();
+        String               sessionCatalog = getString(context, "catalog");
+        String               sessionSchema  = getString(context, "schema");
+
+        if (query != null) {
+            Matcher matcher = TABLE_DDL.matcher(query);
+
+            if (matcher.find()) {
+                MetadataChange table = toTableChange(matcher.group(1), sessionCatalog, sessionSchema);
+
+                if (table != null) {
+                    ret.add(table);
+
+                    // the new name of a renamed table defaults to the catalog and schema of the table
+                    if (matcher.group(2) != null) {
+                        MetadataChange renamed = toTableChange(matcher.group(2), table.getCatalog(), table.getSchema());
+
+                        if (renamed != null) {
+                            ret.add(renamed);
+                        }
+                    }
+                }
+
+                return ret;
+            }
+
+            matcher = SCHEMA_DDL.matcher(query);
+
+            if (matcher.find()) {
+                MetadataChange schema = toSchemaChange(matcher.group(1), sessionCatalog);
+
+                if (schema != null) {
+                    ret.add(schema);
+
+                    if (matcher.group(2) != null) {
+                        MetadataChange renamed = toSchemaChange(matcher.group(2), schema.getCatalog());
+
+                        if (renamed != null) {
+                            ret.add(renamed);
+                        }
+                    }
+                }
+
+                return ret;
+            }
+        }
+
+        // e.g. CREATE TABLE AS and INSERT report the table they wrote as the output
+        Map<String, Object> output        = getMap(getMap(event, "ioMetadata"), "output");
+        String              outputCatalog = getString(output, "catalogName");
+        String              outputSchema  = getString(output, "schema");
+        String              outputTable   = getString(output, "table");
+
+        if (query != null && query.trim().toUpperCase(Locale.ROOT).startsWith("CREATE") && outputCatalog != null && outputSchema != null && outputTable != null) {
+            ret.add(MetadataChange.ofTable(outputCatalog, outputSchema, outputTable));
+        }
+
+        return ret;
+    }
+
+    private static MetadataChange toTableChange(String name, String defaultCatalog, String defaultSchema) {
+        List<String> parts = parseName(name);
+
+        if (parts.size() == 3) {
+            return MetadataChange.ofTable(parts.get(0), parts.get(1), parts.get(2));
+        } else if (parts.size() == 2 && defaultCatalog != null) {
+            return MetadataChange.ofTable(defaultCatalog, parts.get(0), parts.get(1));
+        } else if (parts.size() == 1 && defaultCatalog != null && defaultSchema != null) {
+            return MetadataChange.ofTable(defaultCatalog, defaultSchema, parts.get(0));
+        }
+
+        LOG.warn("Can't resolve table {} without the session catalog and schema; ignoring", name);
+
+        return null;
+    }
+
+    private static MetadataChange toSchemaChange(String name, String defaultCatalog) {
+        List<String> parts = parseName(name);
+
+        if (parts.size() == 2) {
+            return MetadataChange.ofSchema(parts.get(0), parts.get(1));
+        } else if (parts.size() == 1 && defaultCatalog != null) {
+            return MetadataChange.ofSchema(defaultCatalog, parts.get(0));
+        }
+
+        LOG.warn("Can't resolve schema {} without the session catalog; ignoring", name);
+
+        return null;
+    }
+
+    // splits a possibly qualified name into its parts; unquoted parts are lowercased, as Trino does
+    private static List<String> parseName(String name) {
+        List<String> ret = new ArrayList<>();
+
+        if (name != null) {
+            Matcher matcher = NAME_PART.matcher(name);
+
+            while (matcher.find()) {
+                ret.add(matcher.group(1) != null ? matcher.group(1).replace("\"\"", "\"").toLowerCase(Locale.ROOT) : matcher.group(2).toLowerCase(Locale.ROOT));
+            }
+        }
+
+        return ret;
+    }
+
+    private static Map<String, Object> getMap(Map<String, Object> map, String key) {
+        Object value = map != null ? map.get(key) : null;
+
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private static String getString(Map<String, Object> map, String key) {
+        Object value = map != null ? map.get(key) : null;
+
+        return value != null ? value.toString() : null;
+    }
+}
@@ -3,10 +3,13 @@ package org.apache.atlas.trino.cli;
 import org.apache.atlas.ApplicationProperties;
 import org.apache.atlas.AtlasException;
 import org.apache.atlas.trino.client.AtlasClientHelper;
+import org.apache.atlas.trino.client.AtlasImportZipWriter;
 import org.apache.atlas.trino.client.TrinoClientHelper;
+import org.apache.atlas.trino.store.EntityGuidIndex;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.configuration.Configuration;
 
+import java.io.File;
 import java.io.IOException;
 
 public class ExtractorContext {
@@ -19,6 +22,10 @@ public class ExtractorContext {
     private AtlasClientHelper atlasClientHelper;
     private TrinoClientHelper trinoClientHelper;
     private String cronExpression;
+    private final boolean resume;
+    private final File exportFile;
+    private final File eventSpoolDir;
+    private final File stateDir;
 
     static final String OPTION_CATALOG_SHORT             = "c";
     static final String OPTION_CATALOG_LONG              = "catalog";
@@ -30,12 +37,22 @@ public class ExtractorContext {
     static final String OPTION_CRON_EXPRESSION_LONG      = "cronExpression";
     static final String OPTION_FAIL_ON_ERROR             = "failOnError";
     static final String OPTION_DELETE_NON_EXISTING       = "deleteNonExisting";
+    static final String OPTION_RESUME                    = "resume";
+    static final String OPTION_EXPORT_FILE               = "exportFile";
+    static final String OPTION_EVENT_SPOOL_DIR           = "eventSpoolDir";
     static final String OPTION_HELP_SHORT                = "h";
     static final String OPTION_HELP_LONG                 = "help";
 
+    private static final String STATE_DIR                = "atlas.trino.extractor.state.dir";
+    private static final String GUID_INDEX_ENABLED       = "atlas.trino.extractor.guid.index.enabled";
+    private static final String GUID_INDEX_FILE          = "guid-index.log";
+
 
     public ExtractorContext(CommandLine cmd) throws AtlasException, IOException {
        this.atlasConf = getAtlasProperties();
+       this.stateDir = new File(atlasConf.getString(STATE_DIR, "state"));
+       this.exportFile = cmd.hasOption(OPTION_EXPORT_FILE) ? new File(cmd.getOptionValue(OPTION_EXPORT_FILE)) : null;
+       this.eventSpoolDir = cmd.hasOption(OPTION_EVENT_SPOOL_DIR) ? new File(cmd.getOptionValue(OPTION_EVENT_SPOOL_DIR)) : null;
        this.atlasClientHelper = createAtlasClientHelper();
        this.trinoClientHelper = createTrinoClientHelper();
        this.namespace = atlasConf.getString("atlas.trino.namespace", "cm");
@@ -43,6 +60,7 @@ public class ExtractorContext {
        this.schema = cmd.getOptionValue(OPTION_SCHEMA_SHORT);
        this.table = cmd.getOptionValue(OPTION_TABLE_SHORT);
        this.cronExpression = cmd.getOptionValue(OPTION_CRON_EXPRESSION_SHORT);
+       this.resume = cmd.hasOption(OPTION_RESUME);
     }
 
     public Configuration getAtlasConf() {
@@ -77,6 +95,28 @@ public class ExtractorContext {
         return cronExpression;
     }
 
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * The Atlas import ZIP to write the entities to instead of Atlas, or null.
+     */
+    public File getExportFile() {
+        return exportFile;
+    }
+
+    /**
+     * The directory of Trino event listener records to refresh the changed schemas and tables from, or null.
+     */
+    public File getEventSpoolDir() {
+        return eventSpoolDir;
+    }
+
+    public File getStateDir() {
+        return stateDir;
+    }
+
     private Configuration getAtlasProperties() throws AtlasException {
         return ApplicationProperties.get();
     }
@@ -86,7 +126,22 @@ public class ExtractorContext {
     }
 
     private AtlasClientHelper createAtlasClientHelper() throws IOException {
-        return new AtlasClientHelper(atlasConf);
+        // an export doesn't consult Atlas, so the GUIDs of the entities in Atlas aren't needed
+        if (exportFile != null) {
+            return newAtlasClientHelper(atlasConf, null, new AtlasImportZipWriter(exportFile));
+        }
+
+        EntityGuidIndex guidIndex = atlasConf.getBoolean(GUID_INDEX_ENABLED, true) ? new EntityGuidIndex(new File(stateDir, GUID_INDEX_FILE)) : null;
+
+        return newAtlasClientHelper(atlasConf, guidIndex, null);
+    }
+
+    /**
+     * Called from the constructor, before the fields of a subclass are set; benchmarks override it to connect to their
+     * Atlas stand-in.
+     */
+    protected AtlasClientHelper newAtlasClientHelper(Configuration atlasConf, EntityGuidIndex guidIndex, AtlasImportZipWriter exportWriter) throws IOException {
+        return new AtlasClientHelper(atlasConf, guidIndex, exportWriter);
     }
 
 }
@@ -2,10 +2,17 @@ package org.apache.atlas.trino.cli;
 
 import org.apache.atlas.AtlasServiceException;
 import org.apache.atlas.trino.client.AtlasClientHelper;
+import org.apache.atlas.trino.client.AtlasEntityDeleter;
+import org.apache.atlas.trino.client.TableEntityDiff;
 import org.apache.atlas.model.instance.AtlasEntity;
 import org.apache.atlas.model.instance.AtlasEntityHeader;
 import org.apache.atlas.trino.model.Catalog;
+import org.apache.atlas.trino.model.MetadataChange;
+import org.apache.atlas.trino.model.TrinoColumn;
 import org.apache.atlas.trino.client.TrinoClientHelper;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.atlas.trino.store.ProgressJournal;
+import org.apache.atlas.trino.store.TableFingerprintStore;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.configuration.Configuration;
@@ -13,52 +20,303 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-public class ExtractorService {
+/**
+ * Imports Trino metadata into Atlas. An instance holds the read pool, the build stage and the table fingerprints,
+ * and can be executed any number of times; a scheduled extractor keeps one instance, and with it the clients and
+ * caches of its context, for the life of the process. Full runs and refreshes of changed schemas and tables never
+ * overlap.
+ */
+public class ExtractorService implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(ExtractorService.class);
-    private static Configuration atlasProperties;
-    private static TrinoClientHelper trinoClientHelper;
-    private static AtlasClientHelper atlasClientHelper;
-    private static String trinoNamespace;
-    private ExtractorContext context;
+    private final ExtractorContext context;
+    private final Configuration atlasProperties;
+    private final TrinoClientHelper trinoClientHelper;
+    private final AtlasClientHelper atlasClientHelper;
+    private final String trinoNamespace;
+    private final ColumnFetchMode columnFetchMode;
+    private final boolean tablePrefetchEnabled;
+    private final boolean diffEnabled;
+    private final ForkJoinPool readPool;
+    private final PipelineStage buildStage;
+    private final TableFingerprintStore fingerprintStore;
+    private final ProgressJournal journal;
+    private final RetryPolicy retryPolicy;
+    private final ShardSelector shardSelector;
+    private final AtomicLong unchangedTables = new AtomicLong();
+    private final AtomicLong failedUnits = new AtomicLong();
+    private volatile boolean journaling;
     private static final String TRINO_CATALOG_REGISTERED = "atlas.trino.catalog.registered";
-    public static final int THREAD_POOL_SIZE = 10000;
+    private static final String TRINO_COLUMN_FETCH_MODE = "atlas.trino.extractor.column.fetch.mode";
+    private static final String TRINO_TABLE_PREFETCH_ENABLED = "atlas.trino.extractor.table.prefetch.enabled";
+    private static final String TRINO_READ_PARALLELISM = "atlas.trino.extractor.read.parallelism";
+    private static final String TRINO_BUILD_PARALLELISM = "atlas.trino.extractor.build.parallelism";
+    private static final String TRINO_BUILD_QUEUE_SIZE = "atlas.trino.extractor.build.queue.size";
+    private static final String TRINO_INCREMENTAL_ENABLED = "atlas.trino.extractor.incremental.enabled";
+    private static final String TRINO_DIFF_ENABLED = "atlas.trino.extractor.diff.enabled";
+    private static final String TRINO_JOURNAL_ENABLED = "atlas.trino.extractor.journal.enabled";
+    private static final String TRINO_JOURNAL_SYNC_INTERVAL_MS = "atlas.trino.extractor.journal.sync.interval.ms";
+    private static final String TABLE_FINGERPRINTS_FILE = "table-fingerprints.tsv";
+    private static final String PROGRESS_JOURNAL_FILE = "progress.log";
+
+    public enum ColumnFetchMode { TABLE, SCHEMA, CATALOG }
+
+
+    public ExtractorService(ExtractorContext context) throws IOException {
+        this.context = context;
+        this.atlasProperties = context.getAtlasConf();
+        this.trinoClientHelper = context.getTrinoConnector();
+        this.atlasClientHelper = context.getAtlasConnector();
+        this.trinoNamespace = context.getNamespace();
+        this.columnFetchMode = ColumnFetchMode.valueOf(atlasProperties.getString(TRINO_COLUMN_FETCH_MODE, ColumnFetchMode.SCHEMA.name()).trim().toUpperCase());
+        this.tablePrefetchEnabled = atlasProperties.getBoolean(TRINO_TABLE_PREFETCH_ENABLED, true);
+        this.diffEnabled = atlasProperties.getBoolean(TRINO_DIFF_ENABLED, false);
+        this.fingerprintStore = atlasProperties.getBoolean(TRINO_INCREMENTAL_ENABLED, false) ? new TableFingerprintStore(new File(context.getStateDir(), TABLE_FINGERPRINTS_FILE)) : null;
+        // units exported to a ZIP aren't in Atlas until it is imported, so they mustn't be skipped by a later --resume
+        this.journal = atlasProperties.getBoolean(TRINO_JOURNAL_ENABLED, true) && context.getExportFile() == null ? new ProgressJournal(new File(context.getStateDir(), PROGRESS_JOURNAL_FILE), atlasProperties.getLong(TRINO_JOURNAL_SYNC_INTERVAL_MS, 1000)) : null;
+        this.retryPolicy = new RetryPolicy(atlasProperties);
+        this.shardSelector = new ShardSelector(atlasProperties);
+
+        int readParallelism  = atlasProperties.getInt(TRINO_READ_PARALLELISM, Runtime.getRuntime().availableProcessors());
+        int buildParallelism = atlasProperties.getInt(TRINO_BUILD_PARALLELISM, Runtime.getRuntime().availableProcessors());
+        int buildQueueSize   = atlasProperties.getInt(TRINO_BUILD_QUEUE_SIZE, 1000);
+
+        // Trino reads run on readPool, entity building on buildStage and Atlas writes on the batch writer's threads.
+        // A full build queue blocks the readers and a full writer blocks the builders, so memory use stays bounded
+        // however far Trino runs ahead of Atlas.
+        this.readPool   = new ForkJoinPool(readParallelism);
+        this.buildStage = new PipelineStage("entity-builder", buildParallelism, buildQueueSize);
+
+        ExtractorMetrics.gauge("read_pool_queued_tasks", () -> readPool.isTerminated() ? null : readPool.getQueuedTaskCount() + readPool.getQueuedSubmissionCount());
+        ExtractorMetrics.gauge("read_pool_active_threads", () -> readPool.isTerminated() ? null : readPool.getActiveThreadCount());
+        ExtractorMetrics.gauge("build_queue_depth", buildStage::getQueueDepth);
+        ExtractorMetrics.gauge("build_active_tasks", buildStage::getActiveCount);
+    }
 
+    /**
+     * Runs one extraction; returns false if some catalogs, schemas or tables could not be imported, or some entities
+     * could not be written to Atlas. With --resume, the units completed by an interrupted run of the same scope are
+     * skipped.
+     */
+    public synchronized boolean execute() throws Exception {
+        unchangedTables.set(0);
+        failedUnits.set(0);
 
-    public boolean execute(ExtractorContext context) throws Exception {
-        this.context = context;
-        atlasProperties = context.getAtlasConf();
-        trinoClientHelper = context.getTrinoConnector();
-        atlasClientHelper = context.getAtlasConnector();
-        trinoNamespace = context.getNamespace();
+        journaling = journal != null;
+
+        if (journal != null) {
+            String scope = StringUtils.defaultString(context.getCatalog()) + "." + StringUtils.defaultString(context.getSchema()) + "." + StringUtils.defaultString(context.getTable());
+
+            // a journal left by another shard, e.g. in a shared state directory, must not be resumed
+            if (shardSelector.isSharded()) {
+                scope += " shard " + shardSelector.getShardId() + "/" + shardSelector.getShardCount();
+            }
+
+            int skip = journal.startRun(scope, context.isResume());
+
+            if (skip > 0) {
+                LOG.info("Skipping {} catalogs, schemas and tables completed by the interrupted run", skip);
+            }
+        }
 
-        Map<String, String> catalogs = trinoClientHelper.getAllTrinoCatalogs();
+        shardSelector.refresh();
+
+        Map<String, String> catalogs = retryPolicy.call("listing catalogs", trinoClientHelper::getAllTrinoCatalogs);
         LOG.info("Found {} catalogs in Trino", catalogs.toString());
 
-        ExecutorService executor = Executors.newFixedThreadPool(2);
-        executor.submit(() -> {
-            try {
-                processCatalogs(context, catalogs);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+        int failedWritesBefore = atlasClientHelper.getFailedWrites();
+
+        try {
+            long start = System.nanoTime();
+
+            processCatalogs(context, catalogs);
+
+            ExtractorMetrics.timer("phase_seconds", "phase", "import").record(System.nanoTime() - start);
+            start = System.nanoTime();
+
+            deleteCatalogs(context, catalogs);
+
+            ExtractorMetrics.timer("phase_seconds", "phase", "delete").record(System.nanoTime() - start);
+            start = System.nanoTime();
+
+            atlasClientHelper.awaitPendingWrites();
+
+            ExtractorMetrics.timer("phase_seconds", "phase", "drain_writes").record(System.nanoTime() - start);
+
+            // a run with failed units leaves the export unfinished, so that the incomplete ZIP can't be imported
+            if (atlasClientHelper.isExporting() && failedUnits.get() == 0) {
+                atlasClientHelper.finishExport();
             }
-        });
-        executor.submit(() -> {
-            try {
-                deleteCatalogs(context, catalogs);
-            } catch (AtlasServiceException e) {
-                throw new RuntimeException(e);
+        } finally {
+            atlasClientHelper.flushGuidIndex();
+
+            LOG.info("Entity resolution cache: {}", atlasClientHelper.getResolutionCache());
+
+            if (fingerprintStore != null || diffEnabled) {
+                LOG.info("Skipped {} tables with unchanged columns", unchangedTables.get());
             }
-        });
-        executor.shutdown();
+
+            if (fingerprintStore != null) {
+                fingerprintStore.save();
+            }
+        }
+
+        int failedWrites = atlasClientHelper.getFailedWrites() - failedWritesBefore;
+        if (failedWrites > 0) {
+            LOG.error("{} entity batches could not be written to Atlas", failedWrites);
+        }
+
+        if (failedUnits.get() > 0) {
+            LOG.error("{} catalogs, schemas or tables could not be imported; run with --resume to retry only those", failedUnits.get());
+        }
+
+        if (failedWrites > 0 || failedUnits.get() > 0) {
+            if (journal != null) {
+                journal.sync();
+            }
+
+            return false;
+        }
+
+        if (journal != null) {
+            journal.endRun();
+        }
+
         return true;
     }
 
+    /**
+     * Refreshes only the given schemas and tables: the changed tables that exist in Trino are imported again, a changed
+     * schema is imported again as a whole, and the changed schemas and tables that no longer exist in Trino are deleted
+     * from Atlas. Changes outside the registered catalogs, the --catalog and --schema scope or the schemas owned by this
+     * shard are ignored. Returns false if some of them could not be refreshed, or some entities could not be written
+     * to Atlas. A refresh is not journaled; a failed one is simply refreshed again.
+     */
+    public synchronized boolean refresh(Collection<MetadataChange> changes) throws Exception {
+        unchangedTables.set(0);
+        failedUnits.set(0);
+
+        journaling = false;
+
+        shardSelector.refresh();
+
+        // catalog -> schema -> changed tables; null tables for a change of the whole schema
+        Map<String, Map<String, Set<String>>> changedSchemas = new TreeMap<>();
+        int                                   skipped        = 0;
+
+        for (MetadataChange change : changes) {
+            if (!isInScope(change) || !shardSelector.owns(change.getCatalog(), change.getSchema())) {
+                skipped++;
+
+                continue;
+            }
+
+            Map<String, Set<String>> schemas = changedSchemas.computeIfAbsent(change.getCatalog(), catalogName -> new TreeMap<>());
+
+            if (change.isSchemaChange()) {
+                schemas.put(change.getSchema(), null);
+            } else if (!schemas.containsKey(change.getSchema())) {
+                schemas.put(change.getSchema(), new TreeSet<>(Collections.singleton(change.getTable())));
+            } else if (schemas.get(change.getSchema()) != null) {
+                schemas.get(change.getSchema()).add(change.getTable());
+            }
+        }
+
+        int applied = changes.size() - skipped;
+
+        if (skipped > 0) {
+            LOG.info("Skipped {} changes outside the scope of this extractor or owned by other shards", skipped);
+        }
+
+        if (changedSchemas.isEmpty()) {
+            return true;
+        }
+
+        LOG.info("Refreshing {} changed schemas and tables in {} catalogs", applied, changedSchemas.size());
+
+        Map<String, String> catalogs = retryPolicy.call("listing catalogs", trinoClientHelper::getAllTrinoCatalogs);
+
+        int failedWritesBefore = atlasClientHelper.getFailedWrites();
+
+        try {
+            long start = System.nanoTime();
+
+            List<Catalog> catalogsToRefresh = new ArrayList<>();
+
+            if (StringUtils.isEmpty(context.getCatalog())) {
+                catalogsToRefresh = getCatalogsToProcess(catalogs);
+            } else if (catalogs.containsKey(context.getCatalog())) {
+                catalogsToRefresh.add(getCatalogInstance(context.getCatalog(), catalogs.get(context.getCatalog())));
+            }
+
+            catalogsToRefresh.removeIf(catalog -> !changedSchemas.containsKey(catalog.getName()));
+
+            if (!catalogsToRefresh.isEmpty()) {
+                AtlasEntity.AtlasEntityWithExtInfo trinoInstanceEntity = retryPolicy.call("instance " + trinoNamespace, () -> atlasClientHelper.createTrinoInstanceEntity(trinoNamespace));
+
+                List<ForkJoinTask<Void>> catalogTasks = new ArrayList<>();
+
+                for (Catalog catalog : catalogsToRefresh) {
+                    catalog.setTrinoInstanceEntity(trinoInstanceEntity);
+
+                    catalogTasks.add(fork(() -> runUnit("catalog " + catalog.getName(), () -> refreshCatalog(catalog, changedSchemas.get(catalog.getName())))));
+                }
+
+                joinAll(catalogTasks);
+            }
+
+            atlasClientHelper.awaitPendingWrites();
+
+            ExtractorMetrics.timer("phase_seconds", "phase", "refresh").record(System.nanoTime() - start);
+        } finally {
+            atlasClientHelper.flushGuidIndex();
+
+            if (fingerprintStore != null) {
+                fingerprintStore.save();
+            }
+        }
+
+        int failedWrites = atlasClientHelper.getFailedWrites() - failedWritesBefore;
+        if (failedWrites > 0) {
+            LOG.error("{} entity batches could not be written to Atlas", failedWrites);
+        }
+
+        if (failedUnits.get() > 0) {
+            LOG.error("{} catalogs, schemas or tables could not be refreshed", failedUnits.get());
+        }
+
+        return failedWrites == 0 && failedUnits.get() == 0;
+    }
+
+    @Override
+    public void close() {
+        readPool.shutdown();
+        buildStage.shutdown();
+        shardSelector.close();
+
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the progress journal", e);
+            }
+        }
+    }
+
 
     public void processCatalogs(ExtractorContext context, Map<String, String> catalogInTrino) throws Exception {
         List<Catalog> catalogsToProcess = new ArrayList<>();
@@ -83,28 +341,25 @@ public class ExtractorService {
             return;
         }
 
-        AtlasEntity.AtlasEntityWithExtInfo trinoInstanceEntity = atlasClientHelper.createTrinoInstanceEntity(trinoNamespace);
+        AtlasEntity.AtlasEntityWithExtInfo trinoInstanceEntity = retryPolicy.call("instance " + trinoNamespace, () -> atlasClientHelper.createTrinoInstanceEntity(trinoNamespace));
 
-        Queue<Catalog> catalogQueue = new ConcurrentLinkedQueue<>(catalogsToProcess);
-        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+        List<ForkJoinTask<Void>> catalogTasks = new ArrayList<>();
+        for (Catalog catalog : catalogsToProcess) {
+            if (isCompleted(ProgressJournal.catalogUnit(catalog.getName()))) {
+                LOG.info("Catalog {} was completed by the interrupted run; skipping", catalog.getName());
 
-        for (int i = 0; i < THREAD_POOL_SIZE; i++) {
-            executorService.submit(() -> {
-                Catalog currentCatalog;
-                while ((currentCatalog = catalogQueue.poll()) != null) {
-                    try {
-                        currentCatalog.setTrinoInstanceEntity(trinoInstanceEntity);
-                        processCatalog(currentCatalog);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-            });
+                continue;
+            }
+
+            catalog.setTrinoInstanceEntity(trinoInstanceEntity);
+
+            catalogTasks.add(fork(() -> runUnit("catalog " + catalog.getName(), () -> processCatalog(catalog))));
         }
-        executorService.shutdown();
+
+        joinAll(catalogTasks);
     }
 
-    private static List<Catalog> getCatalogsToProcess(Map<String, String> catalogInTrino) {
+    private List<Catalog> getCatalogsToProcess(Map<String, String> catalogInTrino) {
         List<Catalog> catalogsToProcess = new ArrayList<>();
 
         if (MapUtils.isEmpty(catalogInTrino)) {
@@ -126,7 +381,7 @@ public class ExtractorService {
         return catalogsToProcess;
     }
 
-    private static Catalog getCatalogInstance(String catalogName, String connectorType) {
+    private Catalog getCatalogInstance(String catalogName, String connectorType) {
         if (catalogName == null) return null;
 
         boolean isHookEnabled = atlasProperties.getBoolean("atlas.trino.catalog.hook.enabled." + catalogName);
@@ -138,153 +393,621 @@ public class ExtractorService {
         return catalog;
     }
 
-    private static Set<String> getCatalogsToDelete(Map<String, String> catalogInTrino, String instanceGuid) throws AtlasServiceException {
+    private Set<String> getCatalogsToDelete(Map<String, String> catalogInTrino, String instanceGuid) throws AtlasServiceException {
+        return getStaleEntityGuids(instanceGuid, "catalogs", catalogInTrino == null ? null : catalogInTrino.keySet(), null);
+    }
 
-        if (instanceGuid != null) {
+    private Set<String> getSchemasToDelete(List<String> schemasInTrino, String catalogGuid) throws AtlasServiceException {
+        return getStaleEntityGuids(catalogGuid, "schemas", schemasInTrino, null);
+    }
 
-            List<AtlasEntityHeader> catalogsInAtlas = atlasClientHelper.getAllCatalogsInInstance(instanceGuid);
-            if (catalogsInAtlas != null) {
+    // the GUIDs of the schemas of the catalog in Atlas with the given names
+    private Set<String> getSchemaGuids(Set<String> schemaNames, String catalogGuid) throws AtlasServiceException {
+        Set<String> ret = new HashSet<>();
 
-                if (catalogInTrino == null) {
-                    catalogInTrino = new HashMap<>();
+        atlasClientHelper.forEachRelationshipEntityPage(catalogGuid, "schemas", page -> {
+            for (AtlasEntityHeader schema : page) {
+                if (schemaNames.contains(schema.getAttribute("name"))) {
+                    ret.add(schema.getGuid());
                 }
-
-                Map<String, String> finalCatalogInTrino = catalogInTrino;
-                return catalogsInAtlas.stream()
-                        .filter(entity -> entity.getAttribute("name") != null) // Ensure "name" attribute exists
-                        .filter(entity -> !finalCatalogInTrino.containsKey(entity.getAttribute("name"))) // Only missing schemas
-                        .map(AtlasEntityHeader::getGuid) // Extract GUIDs
-                        .collect(Collectors.toSet());
             }
-        }
+        });
 
-        return new HashSet<>();
+        return ret;
     }
 
-    private static Set<String> getSchemasToDelete(List<String> schemasInTrino, String catalogGuid) throws AtlasServiceException {
+    /**
+     * Also drops the fingerprints of the stale tables, so that a table recreated later with the same columns is written
+     * again instead of being skipped as unchanged.
+     */
+    private Set<String> getTablesToDelete(List<String> tablesInTrino, String schemaGuid) throws AtlasServiceException {
+        return getStaleEntityGuids(schemaGuid, "tables", tablesInTrino, fingerprintStore == null ? null : table -> {
+            Object qualifiedName = table.getAttribute("qualifiedName");
+
+            if (qualifiedName != null) {
+                fingerprintStore.remove(qualifiedName.toString());
+            }
+        });
+    }
 
-        if (catalogGuid != null) {
+    /**
+     * Diffs the entities related to parentGuid in Atlas against the names in Trino as the relationship search pages
+     * arrive, so only the Trino names and the stale GUIDs are held, never the full list of Atlas entities. onStale, when
+     * given, is called with the header of each stale entity.
+     */
+    private Set<String> getStaleEntityGuids(String parentGuid, String relationshipAttributeName, Collection<String> namesInTrino, Consumer<AtlasEntityHeader> onStale) throws AtlasServiceException {
+        Set<String> ret = new HashSet<>();
 
-            List<AtlasEntityHeader> schemasInAtlas = atlasClientHelper.getAllSchemasInCatalog(catalogGuid);
-            if (schemasInAtlas != null) {
+        if (parentGuid != null) {
+            Set<String> names = toSet(namesInTrino);
 
-                if (schemasInTrino == null) {
-                    schemasInTrino = new ArrayList<>();
-                }
+            atlasClientHelper.forEachRelationshipEntityPage(parentGuid, relationshipAttributeName, page -> addStaleEntityGuids(page, names, ret, onStale));
 
-                List<String> finalSchemasInTrino = schemasInTrino;
-                return schemasInAtlas.stream()
-                        .filter(entity -> entity.getAttribute("name") != null) // Ensure "name" attribute exists
-                        .filter(entity -> !finalSchemasInTrino.contains(entity.getAttribute("name"))) // Only missing schemas
-                        .map(AtlasEntityHeader::getGuid) // Extract GUIDs
-                        .collect(Collectors.toSet());
-            }
+            LOG.info("Found {} stale {} under {}", ret.size(), relationshipAttributeName, parentGuid);
         }
 
-        return new HashSet<>();
+        return ret;
     }
 
-    private static Set<String> getTablesToDelete(List<String> tablesInTrino, String schemaGuid) throws AtlasServiceException {
+    /**
+     * Returns the GUIDs of the entities in Atlas whose name is not in namesInTrino.
+     */
+    public static Set<String> getStaleEntityGuids(List<AtlasEntityHeader> entitiesInAtlas, Collection<String> namesInTrino) {
+        Set<String> ret = new HashSet<>();
 
-        if (schemaGuid != null) {
+        addStaleEntityGuids(entitiesInAtlas, toSet(namesInTrino), ret, null);
 
-            List<AtlasEntityHeader> tablesInAtlas = atlasClientHelper.getAllTablesInSchema(schemaGuid);
-            if (tablesInAtlas != null) {
+        return ret;
+    }
 
-                if (tablesInTrino == null) {
-                    tablesInTrino = new ArrayList<>();
-                }
+    private static void addStaleEntityGuids(List<AtlasEntityHeader> entitiesInAtlas, Set<String> namesInTrino, Set<String> staleGuids, Consumer<AtlasEntityHeader> onStale) {
+        for (AtlasEntityHeader entity : entitiesInAtlas) {
+            Object name = entity.getAttribute("name");
+
+            if (name != null && !namesInTrino.contains(name)) {
+                staleGuids.add(entity.getGuid());
 
-                List<String> finalTablesInTrino = tablesInTrino;
-                return tablesInAtlas.stream()
-                        .filter(entity -> entity.getAttribute("name") != null) // Ensure "name" attribute exists
-                        .filter(entity -> !finalTablesInTrino.contains(entity.getAttribute("name"))) // Only missing schemas
-                        .map(AtlasEntityHeader::getGuid) // Extract GUIDs
-                        .collect(Collectors.toSet());
+                if (onStale != null) {
+                    onStale.accept(entity);
+                }
             }
         }
+    }
 
-        return new HashSet<>();
+    private static Set<String> toSet(Collection<String> names) {
+        if (names == null) {
+            return Collections.emptySet();
+        }
+
+        return names instanceof Set ? (Set<String>) names : new HashSet<>(names);
+    }
+
+    private boolean isInScope(MetadataChange change) {
+        return (StringUtils.isEmpty(context.getCatalog()) || context.getCatalog().equals(change.getCatalog())) &&
+               (StringUtils.isEmpty(context.getSchema()) || context.getSchema().equals(change.getSchema()));
     }
 
     public void processCatalog(Catalog catalog) throws Exception {
         if (catalog != null) {
-            String catalogName = catalog.getName();
+            String      catalogName = catalog.getName();
+            PendingUnit catalogUnit = new PendingUnit(ProgressJournal.catalogUnit(catalogName), null);
 
             // create trino_catalog
-            AtlasEntity.AtlasEntityWithExtInfo trinoCatalogEntity = atlasClientHelper.createTrinoCatalogEntity(catalog);
+            AtlasEntity.AtlasEntityWithExtInfo trinoCatalogEntity = retryPolicy.call("catalog " + catalogName, () -> atlasClientHelper.createTrinoCatalogEntity(catalog));
 
-            List<String> schemas = trinoClientHelper.getTrinoSchemas(catalogName, catalog.getSchemaToImport());
+            List<String> schemas = retryPolicy.call("catalog " + catalogName, () -> trinoClientHelper.getTrinoSchemas(catalogName, catalog.getSchemaToImport()));
             LOG.info("Found {} schema under {} catalog", schemas.size(), catalogName);
 
-            processSchemas(catalog, trinoCatalogEntity.getEntity(), schemas);
+            List<String> ownedSchemas = schemas.stream().filter(schemaName -> shardSelector.owns(catalogName, schemaName)).collect(Collectors.toList());
+            if (ownedSchemas.size() < schemas.size()) {
+                LOG.info("Skipping {} schemas of catalog {} owned by other shards", schemas.size() - ownedSchemas.size(), catalogName);
+            }
+
+            List<String> schemasToImport = ownedSchemas.stream().filter(schemaName -> !isCompleted(ProgressJournal.schemaUnit(catalogName, schemaName))).collect(Collectors.toList());
+            if (schemasToImport.size() < ownedSchemas.size()) {
+                LOG.info("Skipping {} schemas of catalog {} completed by the interrupted run", ownedSchemas.size() - schemasToImport.size(), catalogName);
+            }
+
+            // a sharded catalog is read schema by schema, so that a shard doesn't read the columns of other shards' schemas
+            if (columnFetchMode == ColumnFetchMode.CATALOG && StringUtils.isEmpty(catalog.getTableToImport()) && !shardSelector.isSharded()) {
+                processSchemasInBulk(catalog, catalogUnit, trinoCatalogEntity.getEntity(), schemasToImport);
+            } else {
+                processSchemas(catalog, catalogUnit, trinoCatalogEntity.getEntity(), schemasToImport);
+            }
 
-            if (StringUtils.isNotEmpty(context.getSchema())) {
+            if (StringUtils.isNotEmpty(context.getSchema()) && shardSelector.ownsCatalog(catalogName)) {
                 deleteSchemas(schemas, trinoCatalogEntity.getEntity().getGuid());
             }
+
+            catalogUnit.done();
+        }
+    }
+
+    private void processSchemas(Catalog catalog, PendingUnit catalogUnit, AtlasEntity trinoCatalogEntity, List<String> schemaToImport) throws Exception {
+        List<ForkJoinTask<Void>> schemaTasks = new ArrayList<>();
+
+        for (String schemaName : schemaToImport) {
+            schemaTasks.add(fork(() -> runUnit("schema " + catalog.getName() + "." + schemaName, () -> processSchema(catalog, catalogUnit, trinoCatalogEntity, schemaName))));
+        }
+
+        joinAll(schemaTasks);
+    }
+
+    private void processSchema(Catalog catalog, PendingUnit catalogUnit, AtlasEntity trinoCatalogEntity, String schemaName) throws Exception {
+        String      description = "schema " + catalog.getName() + "." + schemaName;
+        PendingUnit schemaUnit  = new PendingUnit(ProgressJournal.schemaUnit(catalog.getName(), schemaName), catalogUnit);
+
+        AtlasEntity.AtlasEntityWithExtInfo schemaEntity = retryPolicy.call(description, () -> atlasClientHelper.createTrinoSchemaEntity(catalog, trinoCatalogEntity, schemaName));
+
+        List<String> tables = retryPolicy.call(description, () -> trinoClientHelper.getTrinoTables(catalog.getName(), schemaName, catalog.getTableToImport()));
+        LOG.info("Found {} tables under {}.{} catalog.schema", tables.size(), catalog.getName(), schemaName);
+
+        Map<String, AtlasEntityHeader> existingTables = retryPolicy.call(description, () -> getExistingTables(catalog, schemaEntity.getEntity()));
+
+        processTables(catalog, schemaName, schemaUnit, schemaEntity.getEntity(), tables, existingTables, columnFetchMode == ColumnFetchMode.TABLE || StringUtils.isNotEmpty(catalog.getTableToImport()));
+        atlasClientHelper.flushEntities();
+
+        if (StringUtils.isNotEmpty(context.getTable())) {
+            deleteTables(tables, schemaEntity.getEntity().getGuid());
+        }
+
+        schemaUnit.done();
+    }
+
+    private void refreshCatalog(Catalog catalog, Map<String, Set<String>> changedSchemas) throws Exception {
+        String catalogName = catalog.getName();
+
+        AtlasEntity.AtlasEntityWithExtInfo trinoCatalogEntity = retryPolicy.call("catalog " + catalogName, () -> atlasClientHelper.createTrinoCatalogEntity(catalog));
+
+        List<String> schemas     = retryPolicy.call("catalog " + catalogName, () -> trinoClientHelper.getTrinoSchemas(catalogName, null));
+        Set<String>  schemaNames = new HashSet<>(schemas);
+        Set<String>  dropped     = new HashSet<>();
+
+        List<ForkJoinTask<Void>> schemaTasks = new ArrayList<>();
+
+        for (Map.Entry<String, Set<String>> entry : changedSchemas.entrySet()) {
+            String schemaName = entry.getKey();
+
+            if (schemaNames.contains(schemaName)) {
+                schemaTasks.add(fork(() -> runUnit("schema " + catalogName + "." + schemaName, () -> refreshSchema(catalog, trinoCatalogEntity.getEntity(), schemaName, entry.getValue()))));
+            } else {
+                dropped.add(schemaName);
+            }
+        }
+
+        joinAll(schemaTasks);
+
+        // only the dropped schemas among the changes; other schemas missing from Trino may belong to other shards
+        if (!dropped.isEmpty()) {
+            AtlasEntityDeleter deleter = new AtlasEntityDeleter(atlasProperties);
+
+            addStaleSchemas(deleter, getSchemaGuids(dropped, trinoCatalogEntity.getEntity().getGuid()));
+
+            deleter.execute();
         }
     }
 
-    public void processSchemas(Catalog catalog, AtlasEntity trinoCatalogEntity, List<String> schemaToImport) throws Exception {
+    private void refreshSchema(Catalog catalog, AtlasEntity trinoCatalogEntity, String schemaName, Set<String> changedTables) throws Exception {
+        String      description = "schema " + catalog.getName() + "." + schemaName;
+        PendingUnit schemaUnit  = new PendingUnit(ProgressJournal.schemaUnit(catalog.getName(), schemaName), null);
+        boolean     wholeSchema = changedTables == null;
+
+        AtlasEntity.AtlasEntityWithExtInfo schemaEntity = retryPolicy.call(description, () -> atlasClientHelper.createTrinoSchemaEntity(catalog, trinoCatalogEntity, schemaName));
+
+        List<String> tables = retryPolicy.call(description, () -> trinoClientHelper.getTrinoTables(catalog.getName(), schemaName, null));
+
+        List<String> tablesToImport = wholeSchema ? tables : tables.stream().filter(changedTables::contains).collect(Collectors.toList());
+
+        // a few changed tables are cheaper to read and resolve one by one than by listing the whole schema
+        Map<String, AtlasEntityHeader> existingTables = wholeSchema ? retryPolicy.call(description, () -> getExistingTables(catalog, schemaEntity.getEntity())) : null;
+
+        processTables(catalog, schemaName, schemaUnit, schemaEntity.getEntity(), tablesToImport, existingTables, !wholeSchema || columnFetchMode == ColumnFetchMode.TABLE);
+        atlasClientHelper.flushEntities();
+
+        if (wholeSchema || tablesToImport.size() < changedTables.size()) {
+            deleteTables(tables, schemaEntity.getEntity().getGuid());
+        }
+
+        schemaUnit.done();
+    }
+
+    private void processSchemasInBulk(Catalog catalog, PendingUnit catalogUnit, AtlasEntity trinoCatalogEntity, List<String> schemaToImport) throws Exception {
+        Map<String, AtlasEntity>                     schemaEntities = new ConcurrentHashMap<>();
+        Map<String, PendingUnit>                     schemaUnits    = new ConcurrentHashMap<>();
+        Map<String, List<String>>                    schemaTables   = new ConcurrentHashMap<>();
+        Map<String, Set<String>>                     pendingTables  = new ConcurrentHashMap<>();
+        Map<String, Map<String, AtlasEntityHeader>>  existingTables = new ConcurrentHashMap<>();
+        List<ForkJoinTask<Void>>                     schemaTasks    = new ArrayList<>();
+
         for (String schemaName : schemaToImport) {
-            AtlasEntity.AtlasEntityWithExtInfo schemaEntity = atlasClientHelper.createTrinoSchemaEntity(catalog, trinoCatalogEntity, schemaName);
+            String description = "schema " + catalog.getName() + "." + schemaName;
+
+            schemaTasks.add(fork(() -> runUnit(description, () -> {
+                AtlasEntity.AtlasEntityWithExtInfo schemaEntity = retryPolicy.call(description, () -> atlasClientHelper.createTrinoSchemaEntity(catalog, trinoCatalogEntity, schemaName));
 
-            List<String> tables = trinoClientHelper.getTrinoTables(catalog.getName(), schemaName, catalog.getTableToImport());
-            LOG.info("Found {} tables under {}.{} catalog.schema", tables.size(), catalog.getName(), schemaName);
+                List<String> tables = retryPolicy.call(description, () -> trinoClientHelper.getTrinoTables(catalog.getName(), schemaName, catalog.getTableToImport()));
+                LOG.info("Found {} tables under {}.{} catalog.schema", tables.size(), catalog.getName(), schemaName);
 
-            processTables(catalog, schemaName, schemaEntity.getEntity(), tables);
+                Map<String, AtlasEntityHeader> schemaExistingTables = retryPolicy.call(description, () -> getExistingTables(catalog, schemaEntity.getEntity()));
+                if (schemaExistingTables != null) {
+                    existingTables.put(schemaName, schemaExistingTables);
+                }
 
-            if (StringUtils.isNotEmpty(context.getTable())) {
-                deleteTables(tables, schemaEntity.getEntity().getGuid());
+                schemaEntities.put(schemaName, schemaEntity.getEntity());
+                schemaUnits.put(schemaName, new PendingUnit(ProgressJournal.schemaUnit(catalog.getName(), schemaName), catalogUnit));
+                schemaTables.put(schemaName, tables);
+                pendingTables.put(schemaName, new LinkedHashSet<>(tables));
+            })));
+        }
+
+        joinAll(schemaTasks);
+
+        List<Future<Void>> tableTasks = new ArrayList<>();
+
+        // tables already handed out are skipped when the query is retried, so a retry only picks up the rest
+        retryPolicy.run("columns of catalog " + catalog.getName(), () -> trinoClientHelper.getTrinoColumns(catalog.getName(), catalog.getSchemaToImport(), (schemaName, tableName, columns) -> {
+            Set<String> pending = pendingTables.get(schemaName);
+
+            if (pending != null && pending.remove(tableName)) {
+                tableTasks.add(submitTable(catalog, schemaName, tableName, schemaUnits.get(schemaName), schemaEntities.get(schemaName), existingTables.get(schemaName), columns));
+            }
+        }));
+
+        for (Map.Entry<String, Set<String>> entry : pendingTables.entrySet()) {
+            String schemaName = entry.getKey();
+
+            for (String tableName : entry.getValue()) {
+                tableTasks.add(submitTable(catalog, schemaName, tableName, schemaUnits.get(schemaName), schemaEntities.get(schemaName), existingTables.get(schemaName), Collections.emptyList()));
+            }
+        }
+
+        joinAll(tableTasks);
+        atlasClientHelper.flushEntities();
+
+        if (StringUtils.isNotEmpty(context.getTable())) {
+            for (Map.Entry<String, List<String>> entry : schemaTables.entrySet()) {
+                deleteTables(entry.getValue(), schemaEntities.get(entry.getKey()).getGuid());
             }
         }
+
+        for (PendingUnit schemaUnit : schemaUnits.values()) {
+            schemaUnit.done();
+        }
     }
 
-    public void processTables(Catalog catalog, String schemaName, AtlasEntity schemaEntity, List<String> tablesToImport) throws Exception {
-        for (String tableName : tablesToImport) {
+    private void processTables(Catalog catalog, String schemaName, PendingUnit schemaUnit, AtlasEntity schemaEntity, List<String> tablesToImport, Map<String, AtlasEntityHeader> existingTables, boolean readTablesSeparately) throws Exception {
+        List<Future<Void>> tableTasks = Collections.synchronizedList(new ArrayList<>());
+
+        if (readTablesSeparately) {
+            List<ForkJoinTask<Void>> readTasks = new ArrayList<>();
+
+            for (String tableName : tablesToImport) {
+                if (isCompleted(ProgressJournal.tableUnit(catalog.getName(), schemaName, tableName))) {
+                    continue;
+                }
+
+                String description = "table " + catalog.getName() + "." + schemaName + "." + tableName;
+
+                readTasks.add(fork(() -> runUnit(description, () -> {
+                    List<TrinoColumn> columns = retryPolicy.call(description, () -> trinoClientHelper.getTrinoColumns(catalog.getName(), schemaName, tableName));
 
-            AtlasEntity.AtlasEntityWithExtInfo tableEntityExt = atlasClientHelper.getTrinoTableEntity(catalog, schemaName, tableName, schemaEntity);
-            AtlasEntity tableEntity = tableEntityExt.getEntity();
+                    tableTasks.add(submitTable(catalog, schemaName, tableName, schemaUnit, schemaEntity, existingTables, columns));
+                })));
+            }
 
-            Map<String, Map<String, Object>> columns = trinoClientHelper.getTrinoColumns(catalog.getName(), schemaName, tableName);
-            LOG.info("Found {} columns under {}.{}.{} catalog.schema.table", columns.size(), catalog.getName(), schemaName, tableName);
+            joinAll(readTasks);
+        } else {
+            Set<String> pendingTables = new LinkedHashSet<>(tablesToImport);
 
-            List<AtlasEntity> columnEntities = new ArrayList<>();
-            for (Map.Entry<String, Map<String, Object>> entry : columns.entrySet()) {
-                AtlasEntity columnEntity = atlasClientHelper.getTrinoColumnEntity(catalog, schemaName, tableName, entry, tableEntity);
-                columnEntities.add(columnEntity);
+            // tables already handed out are skipped when the query is retried, so a retry only picks up the rest
+            retryPolicy.run("columns of schema " + catalog.getName() + "." + schemaName, () -> trinoClientHelper.getTrinoColumns(catalog.getName(), schemaName, (schema, tableName, columns) -> {
+                if (pendingTables.remove(tableName)) {
+                    tableTasks.add(submitTable(catalog, schemaName, tableName, schemaUnit, schemaEntity, existingTables, columns));
+                }
+            }));
+
+            for (String tableName : pendingTables) {
+                tableTasks.add(submitTable(catalog, schemaName, tableName, schemaUnit, schemaEntity, existingTables, Collections.emptyList()));
             }
+        }
 
-            atlasClientHelper.createTrinoTableEntity(catalog, tableEntityExt, schemaEntity, columnEntities);
+        joinAll(tableTasks);
+    }
+
+    /**
+     * Submits the building of a table's entities to the build stage; a table completed by the interrupted run is
+     * skipped, and a table that fails after retries is counted as failed and left out of the journal.
+     */
+    private Future<Void> submitTable(Catalog catalog, String schemaName, String tableName, PendingUnit schemaUnit, AtlasEntity schemaEntity, Map<String, AtlasEntityHeader> existingTables, List<TrinoColumn> columns) throws InterruptedException {
+        String unit = ProgressJournal.tableUnit(catalog.getName(), schemaName, tableName);
 
+        if (isCompleted(unit)) {
+            return CompletableFuture.completedFuture(null);
         }
+
+        PendingUnit tableUnit   = new PendingUnit(unit, schemaUnit);
+        String      description = "table " + catalog.getName() + "." + schemaName + "." + tableName;
+
+        return buildStage.submit(() -> runUnit(description, () -> retryPolicy.run(description, () -> processTable(catalog, schemaName, tableName, tableUnit, schemaEntity, existingTables, columns))));
     }
 
-    public void deleteCatalogs(ExtractorContext context, Map<String, String> catalogInTrino) throws AtlasServiceException {
+    private void processTable(Catalog catalog, String schemaName, String tableName, PendingUnit tableUnit, AtlasEntity schemaEntity, Map<String, AtlasEntityHeader> existingTables, List<TrinoColumn> columns) throws Exception {
+        Runnable onWritten = tableUnit::done;
+
+        if (fingerprintStore != null) {
+            String qualifiedName = atlasClientHelper.getTrinoTableQualifiedName(catalog, schemaName, tableName);
+            long   fingerprint   = TableFingerprintStore.fingerprint(columns);
+
+            // a table is skipped only when it is known to exist in Atlas, so that tables deleted from Atlas get recreated
+            if (existingTables != null && existingTables.containsKey(qualifiedName) && fingerprintStore.isUnchanged(qualifiedName, fingerprint)) {
+                LOG.debug("Columns of {} are unchanged; skipping", qualifiedName);
+
+                unchangedTables.incrementAndGet();
+                ExtractorMetrics.counter("tables_unchanged_total", "catalog", catalog.getName()).increment();
+
+                tableUnit.done();
+
+                return;
+            }
+
+            onWritten = () -> {
+                fingerprintStore.update(qualifiedName, fingerprint);
+                tableUnit.done();
+            };
+        }
+
+        AtlasEntity.AtlasEntityWithExtInfo storedTable = getStoredTable(catalog, schemaName, tableName, existingTables);
+        AtlasEntity.AtlasEntityWithExtInfo tableEntityExt;
+
+        if (storedTable != null) {
+            // built in full, so that the attributes and relationships of the stored table can all be diffed
+            tableEntityExt = atlasClientHelper.newTrinoTableEntity(catalog, schemaName, tableName, schemaEntity);
+
+            tableEntityExt.getEntity().setGuid(storedTable.getEntity().getGuid());
+        } else if (diffEnabled) {
+            // getStoredTable() has found the table missing already
+            tableEntityExt = atlasClientHelper.newTrinoTableEntity(catalog, schemaName, tableName, schemaEntity);
+        } else {
+            tableEntityExt = atlasClientHelper.getTrinoTableEntity(catalog, schemaName, tableName, schemaEntity, existingTables);
+        }
+
+        AtlasEntity tableEntity = tableEntityExt.getEntity();
+
+        LOG.info("Found {} columns under {}.{}.{} catalog.schema.table", columns.size(), catalog.getName(), schemaName, tableName);
+
+        List<AtlasEntity> columnEntities = new ArrayList<>(columns.size());
+        for (TrinoColumn column : columns) {
+            AtlasEntity columnEntity = atlasClientHelper.getTrinoColumnEntity(catalog, schemaName, tableName, column, tableEntity);
+            columnEntities.add(columnEntity);
+        }
+
+        if (storedTable != null) {
+            TableEntityDiff diff = TableEntityDiff.diff(storedTable, tableEntity, columnEntities);
+
+            if (diff.isEmpty()) {
+                LOG.debug("{}.{}.{} is up to date in Atlas; skipping", catalog.getName(), schemaName, tableName);
+
+                unchangedTables.incrementAndGet();
+                ExtractorMetrics.counter("tables_unchanged_total", "catalog", catalog.getName()).increment();
+
+                onWritten.run();
+
+                return;
+            }
+
+            LOG.info("Updating {}.{}.{}: {}", catalog.getName(), schemaName, tableName, diff);
+
+            ExtractorMetrics.counter("columns_added_total", "catalog", catalog.getName()).add(diff.getAddedColumns());
+            ExtractorMetrics.counter("columns_changed_total", "catalog", catalog.getName()).add(diff.getChangedColumns());
+            ExtractorMetrics.counter("columns_removed_total", "catalog", catalog.getName()).add(diff.getRemovedColumns());
+
+            if (diff.getRemovedColumnGuids().isEmpty()) {
+                atlasClientHelper.updateTrinoTableEntity(diff, onWritten);
+            } else if (diff.getUpdatedEntities().isEmpty()) {
+                deleteColumns(diff.getRemovedColumnGuids());
+
+                onWritten.run();
+            } else {
+                Runnable tableWritten = onWritten;
+
+                // the removed columns are deleted only once the update is written, so that a failed write leaves the
+                // table as it was; a failed delete leaves the table out of the journal and the fingerprints
+                atlasClientHelper.updateTrinoTableEntity(diff, () -> {
+                    try {
+                        deleteColumns(diff.getRemovedColumnGuids());
+                    } catch (Exception e) {
+                        throw new RuntimeException("Failed to delete the removed columns of " + catalog.getName() + "." + schemaName + "." + tableName, e);
+                    }
+
+                    tableWritten.run();
+                });
+            }
+        } else {
+            atlasClientHelper.createTrinoTableEntity(catalog, tableEntityExt, schemaEntity, columnEntities, onWritten);
+        }
+
+        ExtractorMetrics.counter("tables_processed_total", "catalog", catalog.getName()).increment();
+    }
+
+    /**
+     * With diff enabled, reads the table as stored in Atlas, with its columns, unless the prefetched tables of the
+     * schema show that it isn't there; returns null otherwise, and for a new table.
+     */
+    private AtlasEntity.AtlasEntityWithExtInfo getStoredTable(Catalog catalog, String schemaName, String tableName, Map<String, AtlasEntityHeader> existingTables) throws AtlasServiceException {
+        if (!diffEnabled || (existingTables != null && !existingTables.containsKey(atlasClientHelper.getTrinoTableQualifiedName(catalog, schemaName, tableName)))) {
+            return null;
+        }
+
+        return atlasClientHelper.getStoredTrinoTable(catalog, schemaName, tableName);
+    }
+
+    private Map<String, AtlasEntityHeader> getExistingTables(Catalog catalog, AtlasEntity schemaEntity) throws AtlasServiceException {
+        // a single-table import is cheaper to resolve with one lookup than by listing the whole schema
+        if (!tablePrefetchEnabled || StringUtils.isNotEmpty(catalog.getTableToImport())) {
+            return null;
+        }
+
+        Map<String, AtlasEntityHeader> ret = atlasClientHelper.getTrinoTablesInSchema(schemaEntity.getGuid());
+        LOG.info("Prefetched {} existing tables of schema {}", ret.size(), schemaEntity.getAttribute("qualifiedName"));
+
+        return ret;
+    }
+
+    /**
+     * Runs the task of a catalog, schema or table, and logs and counts its failure instead of failing the whole run;
+     * the unit is then missing from the journal, so that a resumed run imports it again.
+     */
+    private void runUnit(String description, PipelineStage.Task task) throws InterruptedException {
+        try {
+            task.run();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("Failed to import {}", description, e);
+
+            failedUnits.incrementAndGet();
+            ExtractorMetrics.counter("units_failed_total").increment();
+        }
+    }
+
+    private boolean isCompleted(String unit) {
+        return journaling && journal.isCompleted(unit);
+    }
+
+    /**
+     * Runs the task on the read pool; from inside the pool the task is pushed to the current worker's queue, where
+     * idle workers can steal it.
+     */
+    private ForkJoinTask<Void> fork(PipelineStage.Task task) {
+        ForkJoinTask<Void> ret = ForkJoinTask.adapt((Callable<Void>) () -> {
+            task.run();
+
+            return null;
+        });
+
+        if (ForkJoinTask.getPool() == readPool) {
+            ret.fork();
+        } else {
+            readPool.execute(ret);
+        }
+
+        return ret;
+    }
+
+    private static void joinAll(List<? extends Future<Void>> tasks) throws InterruptedException {
+        RuntimeException failure = null;
+
+        for (Future<Void> task : tasks) {
+            try {
+                if (task instanceof ForkJoinTask) {
+                    ((ForkJoinTask<Void>) task).join();
+                } else {
+                    try {
+                        task.get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * A catalog, schema or table whose completion waits for its own work and for that of its child units; a table
+     * completes when its entities have been written to Atlas. A completed unit is recorded in the journal and
+     * counted down in its parent.
+     */
+    private final class PendingUnit {
+        private final String        unit;
+        private final PendingUnit   parent;
+        private final AtomicInteger pending = new AtomicInteger(1); // held until the unit's own work is done
+
+        PendingUnit(String unit, PendingUnit parent) {
+            this.unit   = unit;
+            this.parent = parent;
+
+            if (parent != null) {
+                parent.pending.incrementAndGet();
+            }
+        }
+
+        void done() {
+            if (pending.decrementAndGet() == 0) {
+                if (journaling) {
+                    journal.completed(unit);
+                }
+
+                if (parent != null) {
+                    parent.done();
+                }
+            }
+        }
+    }
+
+    public void deleteCatalogs(ExtractorContext context, Map<String, String> catalogInTrino) throws Exception {
         if (StringUtils.isEmpty(context.getCatalog())) {
             return;
         }
+        if (!shardSelector.ownsCatalog(context.getCatalog())) {
+            LOG.info("Stale catalogs are deleted by the shard owning catalog {}", context.getCatalog());
+
+            return;
+        }
         AtlasEntityHeader trinoInstance = atlasClientHelper.getAtlasTrinoInstance(trinoNamespace);
+        if (trinoInstance == null) {
+            return;
+        }
+
+        AtlasEntityDeleter deleter          = new AtlasEntityDeleter(atlasProperties);
+        Set<String>        catalogsToDelete = getCatalogsToDelete(catalogInTrino, trinoInstance.getGuid());
 
-        Set<String> catalogsToDelete = getCatalogsToDelete(catalogInTrino, trinoInstance.getGuid());
         for (String catalogGuid : catalogsToDelete) {
-            deleteSchemas(null, catalogGuid);
-            atlasClientHelper.deleteByGuid(catalogsToDelete);
+            addStaleSchemas(deleter, getSchemasToDelete(null, catalogGuid));
         }
+        deleter.addCatalogs(catalogsToDelete);
+
+        deleter.execute();
     }
 
-    public void deleteSchemas(List<String> schemasInTrino, String catalogGuid) throws AtlasServiceException {
-        Set<String> schemasToDelete = getSchemasToDelete(schemasInTrino, catalogGuid);
-        for (String schemaGuid : schemasToDelete) {
-            deleteTables(null, schemaGuid);
-            atlasClientHelper.deleteByGuid(schemasToDelete);
-        }
+    public void deleteSchemas(List<String> schemasInTrino, String catalogGuid) throws Exception {
+        AtlasEntityDeleter deleter = new AtlasEntityDeleter(atlasProperties);
+
+        addStaleSchemas(deleter, getSchemasToDelete(schemasInTrino, catalogGuid));
+
+        deleter.execute();
+    }
+
+    private void deleteTables(List<String> tablesInTrino, String schemaGuid) throws Exception {
+        AtlasEntityDeleter deleter = new AtlasEntityDeleter(atlasProperties);
+
+        deleter.addTables(getTablesToDelete(tablesInTrino, schemaGuid));
+
+        deleter.execute();
     }
 
-    private void deleteTables(List<String> tablesInTrino, String schemaGuid) throws AtlasServiceException {
-        Set<String> tablesToDelete = getTablesToDelete(tablesInTrino, schemaGuid);
-        if (CollectionUtils.isNotEmpty(tablesToDelete)) {
-            atlasClientHelper.deleteByGuid(tablesToDelete);
+    // a table loses few columns at a time, so they are deleted with one call on the calling thread, which may be a
+    // writer thread running the callback of the table's update
+    private void deleteColumns(List<String> columnGuids) throws Exception {
+        int deleted = atlasClientHelper.deleteByGuids(columnGuids);
+
+        LOG.debug("Deleted {} of {} removed columns", deleted, columnGuids.size());
+    }
+
+    private void addStaleSchemas(AtlasEntityDeleter deleter, Set<String> schemaGuids) throws AtlasServiceException {
+        for (String schemaGuid : schemaGuids) {
+            deleter.addTables(getTablesToDelete(null, schemaGuid));
         }
+
+        deleter.addSchemas(schemaGuids);
     }
 }
@@ -0,0 +1,82 @@
+package org.apache.atlas.trino.cli;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stage of the extraction pipeline: a fixed number of worker threads fed by a bounded queue. submit() blocks while
+ * the queue is full, which keeps the upstream stage from running ahead of this one.
+ */
+public class PipelineStage {
+    private final String             name;
+    private final int                parallelism;
+    private final int                queueSize;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore          capacity;
+
+    public PipelineStage(String name, int parallelism, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.name        = name;
+        this.parallelism = parallelism;
+        this.queueSize   = queueSize;
+        this.capacity    = new Semaphore(parallelism + queueSize);
+        this.executor    = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, name + "-" + threadCount.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    public Future<Void> submit(Task task) throws InterruptedException {
+        capacity.acquire();
+
+        try {
+            return executor.submit(() -> {
+                try {
+                    task.run();
+
+                    return null;
+                } finally {
+                    capacity.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            capacity.release();
+
+            throw e;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[parallelism=" + parallelism + ", queueSize=" + queueSize + "]";
+    }
+
+    public interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,98 @@
+package org.apache.atlas.trino.cli;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import org.apache.atlas.AtlasServiceException;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries a unit of work that failed with a transient error, i.e. an I/O or SQL error, or an Atlas response of 429
+ * or 5xx, with exponential backoff and full jitter: before attempt n+1 it sleeps a random time between 0 and
+ * min(max.backoff.ms, initial.backoff.ms * 2^(n-1)), so that workers that failed together don't retry together.
+ */
+public class RetryPolicy {
+    private static final Logger LOG = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private static final String RETRY_MAX_ATTEMPTS       = "atlas.trino.extractor.retry.max.attempts";
+    private static final String RETRY_INITIAL_BACKOFF_MS = "atlas.trino.extractor.retry.initial.backoff.ms";
+    private static final String RETRY_MAX_BACKOFF_MS     = "atlas.trino.extractor.retry.max.backoff.ms";
+
+    private final int  maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public RetryPolicy(Configuration atlasConf) {
+        this(atlasConf.getInt(RETRY_MAX_ATTEMPTS, 3), atlasConf.getLong(RETRY_INITIAL_BACKOFF_MS, 1000), atlasConf.getLong(RETRY_MAX_BACKOFF_MS, 30000));
+    }
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMs, long maxBackoffMs) {
+        this.maxAttempts      = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs     = maxBackoffMs;
+    }
+
+    public void run(String description, PipelineStage.Task task) throws Exception {
+        call(description, () -> {
+            task.run();
+
+            return null;
+        });
+    }
+
+    /**
+     * Calls the callable until it succeeds, fails with an error that is not transient, or has failed maxAttempts
+     * times; the last error is thrown.
+     */
+    public <T> T call(String description, Callable<T> callable) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return callable.call();
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+
+                long backoffMs = getBackoffMs(attempt);
+
+                LOG.warn("Attempt {} of {} at {} failed; retrying in {} ms: {}", attempt, maxAttempts, description, backoffMs, e.toString());
+
+                ExtractorMetrics.counter("retries_total").increment();
+
+                Thread.sleep(backoffMs);
+            }
+        }
+    }
+
+    long getBackoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 30));
+
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof AtlasServiceException && ((AtlasServiceException) t).getStatus() != null) {
+                int status = ((AtlasServiceException) t).getStatus().getStatusCode();
+
+                return status == 429 || status >= 500;
+            }
+
+            if (t instanceof IOException || t instanceof SQLException || t instanceof ClientHandlerException) {
+                return true;
+            }
+
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+
+        return false;
+    }
+}
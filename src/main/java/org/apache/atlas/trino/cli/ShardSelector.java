@@ -0,0 +1,221 @@
+package org.apache.atlas.trino.cli;
+
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the schemas of all catalogs between shard.count extractor processes. Each catalog.schema is owned by the
+ * shard with the highest rendezvous hash of it, so every process computes the same assignment without talking to the
+ * others, and a change in the set of shards moves only the schemas of the shards that joined or left.
+ *
+ * With shard.lease.dir set to a directory shared by all processes, each process keeps the lease file shard-<id>.lease
+ * there fresh, and schemas are assigned among the shards whose lease is younger than shard.lease.ttl.ms; the schemas
+ * of a shard that died go to the remaining shards on their next run. A lease is renewed every ttl/3 while the process
+ * runs, so for processes started by an external scheduler the ttl must be longer than the schedule interval.
+ */
+public class ShardSelector implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ShardSelector.class);
+
+    private static final String SHARD_COUNT        = "atlas.trino.extractor.shard.count";
+    private static final String SHARD_ID           = "atlas.trino.extractor.shard.id";
+    private static final String SHARD_LEASE_DIR    = "atlas.trino.extractor.shard.lease.dir";
+    private static final String SHARD_LEASE_TTL_MS = "atlas.trino.extractor.shard.lease.ttl.ms";
+    private static final String LEASE_FILE_PREFIX  = "shard-";
+    private static final String LEASE_FILE_SUFFIX  = ".lease";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME        = 0x100000001b3L;
+
+    private final int                      shardCount;
+    private final int                      shardId;
+    private final File                     leaseDir;
+    private final long                     leaseTtlMs;
+    private final ScheduledExecutorService leaseRenewer;
+
+    private volatile int[] liveShards;
+
+    public ShardSelector(Configuration atlasConf) throws IOException {
+        this.shardCount = Math.max(1, atlasConf.getInt(SHARD_COUNT, 1));
+        this.shardId    = atlasConf.getInt(SHARD_ID, 0);
+        this.leaseTtlMs = atlasConf.getLong(SHARD_LEASE_TTL_MS, TimeUnit.MINUTES.toMillis(5));
+
+        String leaseDirPath = atlasConf.getString(SHARD_LEASE_DIR);
+
+        this.leaseDir = isSharded() && StringUtils.isNotEmpty(leaseDirPath) ? new File(leaseDirPath) : null;
+
+        if (shardId < 0 || shardId >= shardCount) {
+            throw new IllegalArgumentException(SHARD_ID + "=" + shardId + " is not in [0, " + shardCount + ")");
+        }
+
+        this.liveShards = allShards(shardCount);
+
+        if (leaseDir != null) {
+            if (!leaseDir.exists() && !leaseDir.mkdirs()) {
+                throw new IOException("Failed to create directory " + leaseDir);
+            }
+
+            renewLease();
+
+            this.leaseRenewer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "shard-lease-renewer");
+
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
+            long renewIntervalMs = Math.max(1, leaseTtlMs / 3);
+
+            leaseRenewer.scheduleWithFixedDelay(this::renewLeaseQuietly, renewIntervalMs, renewIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.leaseRenewer = null;
+        }
+
+        if (isSharded()) {
+            ExtractorMetrics.gauge("shard_live_shards", () -> liveShards.length);
+
+            LOG.info("Shard {} of {}, lease dir {}", shardId, shardCount, leaseDir != null ? leaseDir : "<none>");
+        }
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    /**
+     * Re-reads the live shards from the lease directory; called at the start of each run, so that the assignment
+     * stays fixed for the duration of the run.
+     */
+    public void refresh() {
+        if (leaseDir == null) {
+            return;
+        }
+
+        long  now   = System.currentTimeMillis();
+        int[] live  = new int[shardCount];
+        int   count = 0;
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            File leaseFile = getLeaseFile(shard);
+
+            // a shard's own lease is renewed by this process, so it is live even if the shared clock drifted
+            if (shard == shardId || now - leaseFile.lastModified() <= leaseTtlMs) {
+                live[count++] = shard;
+            }
+        }
+
+        int[] previous = liveShards;
+
+        liveShards = Arrays.copyOf(live, count);
+
+        if (!Arrays.equals(previous, liveShards)) {
+            LOG.info("Live shards: {} of {}", Arrays.toString(liveShards), shardCount);
+        }
+    }
+
+    public boolean owns(String catalog, String schema) {
+        return !isSharded() || getOwner(catalog + "." + schema, liveShards) == shardId;
+    }
+
+    /**
+     * Whether this shard is the one to delete the stale schemas of the catalog, and the stale catalogs of a run
+     * limited to the catalog; every shard imports some of its schemas, but only one of them may delete.
+     */
+    public boolean ownsCatalog(String catalog) {
+        return !isSharded() || getOwner(catalog, liveShards) == shardId;
+    }
+
+    public int getShardId() {
+        return shardId;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public void close() {
+        if (leaseRenewer != null) {
+            leaseRenewer.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the shard with the highest hash of key among the given shards.
+     */
+    static int getOwner(String key, int[] shards) {
+        int  ret     = shards[0];
+        long maxHash = Long.MIN_VALUE;
+
+        for (int shard : shards) {
+            long hash = hash(key, shard);
+
+            if (hash > maxHash) {
+                maxHash = hash;
+                ret     = shard;
+            }
+        }
+
+        return ret;
+    }
+
+    // FNV-1a of the key, mixed with the shard by the 64-bit finalizer of MurmurHash3
+    static long hash(String key, int shard) {
+        long h = FNV_OFFSET_BASIS;
+
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= FNV_PRIME;
+        }
+
+        h ^= (shard + 1) * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+
+    private File getLeaseFile(int shard) {
+        return new File(leaseDir, LEASE_FILE_PREFIX + shard + LEASE_FILE_SUFFIX);
+    }
+
+    private void renewLease() throws IOException {
+        String owner = ManagementFactory.getRuntimeMXBean().getName() + " " + System.currentTimeMillis() + "\n";
+
+        Files.write(getLeaseFile(shardId).toPath(), owner.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void renewLeaseQuietly() {
+        try {
+            renewLease();
+        } catch (IOException e) {
+            LOG.warn("Failed to renew shard lease in {}", leaseDir, e);
+        }
+    }
+
+    private static int[] allShards(int shardCount) {
+        int[] ret = new int[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            ret[i] = i;
+        }
+
+        return ret;
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.atlas.trino.cli;
 
 import org.apache.atlas.AtlasException;
 import org.apache.atlas.exception.AtlasBaseException;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
 import org.apache.commons.cli.*;
 import org.apache.commons.lang.StringUtils;
 import org.quartz.*;
@@ -33,45 +34,46 @@ import java.util.regex.Pattern;
 
 import static org.apache.atlas.trino.cli.ExtractorContext.*;
 
-@DisallowConcurrentExecution // Prevents overlapping execution
 public class TrinoExtractorMain {
     private static final Logger LOG = LoggerFactory.getLogger(TrinoExtractorMain.class);
 
     private static final int EXIT_CODE_SUCCESS = 0;
     private static final int EXIT_CODE_FAILED = 1;
     private static final int EXIT_CODE_HELP = 2;
+    private static final String JOB_DATA_EXTRACTOR_SERVICE = "extractorService";
     private static final Pattern CRON_PATTERN = Pattern.compile("^([0-5]?\\d|\\*) ([0-5]?\\d|\\*) ([01]?\\d|2[0-3]|\\*) ([1-9]|[12]\\d|3[01]|\\*) ([1-9]|1[0-2]|\\*) ([0-7]|\\*)$");
     private static ExtractorContext extractorContext;
     static int exitCode = EXIT_CODE_FAILED;
 
     public static void main(String[] args) {
+        boolean daemon = false;
+
         try {
             extractorContext = createExtractorContext(args);
 
             if (extractorContext != null) {
+                ExtractorMetrics.start(extractorContext.getAtlasConf());
+
                 String cronExpression = extractorContext.getCronExpression();
-                if (StringUtils.isNotEmpty(cronExpression)) {
+                if (StringUtils.isNotEmpty(cronExpression) || extractorContext.getEventSpoolDir() != null) {
 
-                    if (!isValidCronExpression(cronExpression)) {
+                    if (StringUtils.isNotEmpty(cronExpression) && !isValidCronExpression(cronExpression)) {
                         exitCode = EXIT_CODE_FAILED;
-                        LOG.error("Invalid cron expression provided: {}", cronExpression);
+                        LOG.error("Invalid cron expression provided: {}; expected second minute hour day-of-month month day-of-week, with '*' in day-of-month or day-of-week", cronExpression);
 
                     } else {
-                        JobDetail job = JobBuilder.newJob(MetadataJob.class).build();
-                        Trigger trigger = TriggerBuilder.newTrigger()
-                                .withSchedule(CronScheduleBuilder.cronSchedule(cronExpression))
-                                .build();
-
-                        Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
-                        scheduler.start();
-                        scheduler.scheduleJob(job, trigger);
+                        startDaemon(cronExpression);
+
+                        daemon   = true;
+                        exitCode = EXIT_CODE_SUCCESS;
                     }
 
                 } else {
-                    ExtractorService extractorService = new ExtractorService();
-                    if (extractorService.execute(extractorContext)) {
-                        exitCode = EXIT_CODE_SUCCESS;
-                        LOG.info("Successfully completed execution of extraction task.");
+                    try (ExtractorService extractorService = new ExtractorService(extractorContext)) {
+                        if (extractorService.execute()) {
+                            exitCode = EXIT_CODE_SUCCESS;
+                            LOG.info("Successfully completed execution of extraction task.");
+                        }
                     }
                 }
             } else {
@@ -82,11 +84,78 @@ public class TrinoExtractorMain {
             System.out.println(e.getMessage());
 
         } finally {
-            if (extractorContext != null && extractorContext.getAtlasConnector() != null) {
-                extractorContext.getAtlasConnector().close();
+            if (!daemon) {
+                closeExtractorContext();
             }
         }
-        System.exit(exitCode);
+
+        // in daemon mode the scheduler and event refresher threads keep the process alive until it is stopped
+        if (!daemon) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Schedules extraction runs on a single ExtractorService, so that the Atlas client, the Trino connection pool,
+     * the caches and the table fingerprints stay warm between runs. Runs never overlap: a trigger that fires while a
+     * run is in progress is skipped. With --eventSpoolDir, the schemas and tables changed between runs are refreshed
+     * from the Trino events on the same ExtractorService, with or without a schedule. On shutdown, e.g. SIGTERM, the
+     * run or refresh in progress is allowed to finish.
+     */
+    private static void startDaemon(String cronExpression) throws Exception {
+        ExtractorService extractorService = new ExtractorService(extractorContext);
+        EventRefresher   eventRefresher   = extractorContext.getEventSpoolDir() != null ? new EventRefresher(extractorService, extractorContext) : null;
+        Scheduler        scheduler        = StringUtils.isNotEmpty(cronExpression) ? StdSchedulerFactory.getDefaultScheduler() : null;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOG.info("Shutting down; waiting for the extraction in progress, if any");
+
+            if (scheduler != null) {
+                try {
+                    scheduler.shutdown(true);
+                } catch (SchedulerException e) {
+                    LOG.error("Failed to shut down the scheduler", e);
+                }
+            }
+
+            if (eventRefresher != null) {
+                eventRefresher.close();
+            }
+
+            extractorService.close();
+            closeExtractorContext();
+        }, "extractor-shutdown"));
+
+        if (scheduler != null) {
+            JobDataMap jobData = new JobDataMap();
+
+            jobData.put(JOB_DATA_EXTRACTOR_SERVICE, extractorService);
+
+            JobDetail job = JobBuilder.newJob(MetadataJob.class).usingJobData(jobData).build();
+            Trigger trigger = TriggerBuilder.newTrigger()
+                    .withSchedule(CronScheduleBuilder.cronSchedule(toQuartzCronExpression(cronExpression)).withMisfireHandlingInstructionDoNothing())
+                    .build();
+
+            scheduler.scheduleJob(job, trigger);
+            scheduler.start();
+
+            LOG.info("Scheduled metadata extraction: cron={}, next run at {}", cronExpression, trigger.getNextFireTime());
+        }
+
+        if (eventRefresher != null) {
+            eventRefresher.start();
+        }
+    }
+
+    private static void closeExtractorContext() {
+        ExtractorMetrics.stop();
+
+        if (extractorContext != null && extractorContext.getAtlasConnector() != null) {
+            extractorContext.getAtlasConnector().close();
+        }
+        if (extractorContext != null && extractorContext.getTrinoConnector() != null) {
+            extractorContext.getTrinoConnector().close();
+        }
     }
 
     static ExtractorContext createExtractorContext(String[] args) throws AtlasBaseException {
@@ -104,6 +173,10 @@ public class TrinoExtractorMain {
                 throw new AtlasBaseException("Unrecognized arguments.");
             }
 
+            if (cmd.hasOption(OPTION_EXPORT_FILE) && (cmd.hasOption(OPTION_CRON_EXPRESSION_SHORT) || cmd.hasOption(OPTION_RESUME) || cmd.hasOption(OPTION_EVENT_SPOOL_DIR))) {
+                throw new AtlasBaseException("--" + OPTION_EXPORT_FILE + " can't be combined with --" + OPTION_CRON_EXPRESSION_LONG + ", --" + OPTION_RESUME + " or --" + OPTION_EVENT_SPOOL_DIR);
+            }
+
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Successfully initialized the extractor context.");
             }
@@ -137,6 +210,9 @@ public class TrinoExtractorMain {
                 .addOption(OPTION_CRON_EXPRESSION_SHORT, OPTION_CRON_EXPRESSION_LONG, true, "Cron expression to run extraction")
                 .addOption(OPTION_FAIL_ON_ERROR, false, "failOnError")
                 .addOption(OPTION_DELETE_NON_EXISTING, false, "Delete database and table entities in Atlas if not present in Hive")
+                .addOption(OPTION_RESUME, false, "Resume the interrupted run, skipping the catalogs, schemas and tables it completed")
+                .addOption(OPTION_EXPORT_FILE, true, "Write the entities to this Atlas import ZIP instead of sending them to Atlas")
+                .addOption(OPTION_EVENT_SPOOL_DIR, true, "Refresh the schemas and tables changed by the Trino events spooled to this directory")
                 .addOption(OPTION_HELP_SHORT, OPTION_HELP_LONG, false, "Print this help message");
     }
 
@@ -146,28 +222,67 @@ public class TrinoExtractorMain {
         System.out.println();
     }
 
-    private static boolean isValidCronExpression(String cronExpression) {
-        return CRON_PATTERN.matcher(cronExpression).matches();
+    /**
+     * Quartz can't trigger on a day of the month and a day of the week at once, so one of them has to be '*'.
+     */
+    static boolean isValidCronExpression(String cronExpression) {
+        if (!CRON_PATTERN.matcher(cronExpression).matches()) {
+            return false;
+        }
+
+        String[] fields = cronExpression.split(" ");
+
+        return "*".equals(fields[3]) || "*".equals(fields[5]);
+    }
+
+    /**
+     * Quartz wants '?' in one of day-of-month and day-of-week, and numbers days of the week 1 (Sunday) to 7, where
+     * the accepted expressions use '*' in both and 0 or 7 for Sunday.
+     */
+    static String toQuartzCronExpression(String cronExpression) {
+        String[] fields = cronExpression.trim().split(" ");
+
+        if (!"*".equals(fields[5])) {
+            fields[5] = String.valueOf(Integer.parseInt(fields[5]) % 7 + 1);
+
+            if ("*".equals(fields[3])) {
+                fields[3] = "?";
+            }
+        } else {
+            fields[5] = "?";
+        }
+
+        return String.join(" ", fields);
     }
 
-    public class MetadataJob implements Job {
-        private final Logger LOG = LoggerFactory.getLogger(MetadataJob.class);
+    /**
+     * Quartz instantiates jobs reflectively, so this has to be a public static class with a no-arg constructor. The
+     * ExtractorService comes from the job data, where startDaemon() put it.
+     */
+    @DisallowConcurrentExecution // Prevents overlapping execution
+    public static class MetadataJob implements Job {
+        private static final Logger LOG = LoggerFactory.getLogger(MetadataJob.class);
 
-        public void execute(JobExecutionContext context) {
+        public void execute(JobExecutionContext context) throws JobExecutionException {
             LOG.info("Executing metadata extraction at: {}", java.time.LocalTime.now());
 
-            if (extractorContext != null) {
+            ExtractorService extractorService = (ExtractorService) context.getMergedJobDataMap().get(JOB_DATA_EXTRACTOR_SERVICE);
+
+            if (extractorService != null) {
                 try {
-                    ExtractorService extractorService = new ExtractorService();
-                    extractorService.execute(extractorContext);
-                    exitCode = EXIT_CODE_SUCCESS;
-                    LOG.info("Successfully completed execution of extraction task.");
+                    if (extractorService.execute()) {
+                        LOG.info("Successfully completed execution of extraction task.");
+                    } else {
+                        LOG.error("Extraction task completed with errors");
+                    }
                 } catch (Exception e) {
-                    throw new RuntimeException(e);
+                    // the next trigger runs again; the daemon keeps going
+                    LOG.error("Extraction task failed", e);
+
+                    throw new JobExecutionException(e, false);
                 }
             } else {
-                exitCode = EXIT_CODE_FAILED;
-                LOG.error("Extractor Context not found, Skipping execution");
+                LOG.error("Extractor service not found, Skipping execution");
             }
         }
     }
@@ -7,21 +7,30 @@ import org.apache.atlas.model.discovery.AtlasSearchResult;
 import org.apache.atlas.model.discovery.SearchParameters;
 import org.apache.atlas.model.instance.AtlasEntity;
 import org.apache.atlas.model.instance.AtlasEntityHeader;
+import org.apache.atlas.model.instance.AtlasObjectId;
 import org.apache.atlas.model.instance.EntityMutationResponse;
 import org.apache.atlas.model.instance.EntityMutations;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
 import org.apache.atlas.trino.model.Catalog;
+import org.apache.atlas.trino.model.TrinoColumn;
+import org.apache.atlas.trino.store.EntityGuidIndex;
 import org.apache.atlas.type.AtlasTypeUtil;
 import org.apache.atlas.utils.AuthenticationUtil;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.apache.atlas.type.AtlasTypeUtil.ATTRIBUTE_QUALIFIED_NAME;
 
@@ -35,13 +44,80 @@ public class AtlasClientHelper {
     public static final int pageLimit = 10000;
     private static final String DEFAULT_ATLAS_URL = "http://localhost:21000/";
     private static final String APPLICATION_PROPERTY_ATLAS_ENDPOINT = "atlas.rest.address";
+    private static final String VERIFY_WRITES = "atlas.trino.extractor.verify.writes";
+    private static final String SEARCH_PREFETCH_PAGES = "atlas.trino.extractor.search.prefetch.pages";
+    private static final String DELETE_PARALLELISM = "atlas.trino.extractor.delete.parallelism";
     private static AtlasClientV2 atlasClientV2;
+    private static AtlasConcurrencyLimiter atlasLimiter;
+    private static AtlasEntityBatchWriter entityWriter;
+    private static EntityGuidIndex guidIndex;
+    private static EntityResolutionCache resolutionCache;
+    private static boolean verifyWrites;
+    private static ExecutorService searchExecutor;
+    private static ExecutorService deleteExecutor;
+    private static int searchPrefetchPages;
+    private static AtlasImportZipWriter exportWriter;
 
     public AtlasClientHelper(Configuration atlasConf) throws IOException {
-        atlasClientV2 = getAtlasClient(atlasConf);
+        this(atlasConf, null);
     }
 
-    private AtlasClientV2 getAtlasClient(Configuration atlasConf) throws IOException {
+    public AtlasClientHelper(Configuration atlasConf, EntityGuidIndex entityGuidIndex) throws IOException {
+        this(atlasConf, entityGuidIndex, null);
+    }
+
+    /**
+     * With an export writer, entities are written to an Atlas import ZIP instead of Atlas: Atlas is not contacted,
+     * every entity is created with a GUID of its own, and lookups find nothing.
+     */
+    public AtlasClientHelper(Configuration atlasConf, EntityGuidIndex entityGuidIndex, AtlasImportZipWriter atlasExportWriter) throws IOException {
+        exportWriter  = atlasExportWriter;
+        atlasClientV2 = exportWriter == null ? getAtlasClient(atlasConf) : null;
+        atlasLimiter  = new AtlasConcurrencyLimiter(atlasConf);
+        entityWriter  = exportWriter != null ? null : new AtlasEntityBatchWriter(atlasClientV2, atlasConf, atlasLimiter, new AtlasEntityBatchWriter.BatchListener() {
+            @Override
+            public void onWritten(EntityMutationResponse response) {
+                recordMutations(response);
+            }
+
+            @Override
+            public void onFailed(AtlasEntity.AtlasEntitiesWithExtInfo entities, Exception exception) {
+                if (exception instanceof AtlasServiceException && ((AtlasServiceException) exception).getStatus() == ClientResponse.Status.NOT_FOUND) {
+                    evictReferencedGuids(entities.getEntities(), entities.getReferredEntities());
+                }
+            }
+        });
+        guidIndex       = entityGuidIndex;
+        resolutionCache = new EntityResolutionCache(atlasConf);
+        verifyWrites    = atlasConf.getBoolean(VERIFY_WRITES, false);
+
+        AtomicInteger searchThreadCount = new AtomicInteger();
+
+        searchPrefetchPages = atlasConf.getInt(SEARCH_PREFETCH_PAGES, 2);
+        searchExecutor      = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "atlas-search-" + searchThreadCount.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        AtomicInteger deleteThreadCount = new AtomicInteger();
+
+        deleteExecutor = Executors.newFixedThreadPool(Math.max(1, atlasConf.getInt(DELETE_PARALLELISM, 4)), r -> {
+            Thread thread = new Thread(r, "atlas-delete-" + deleteThreadCount.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the Atlas client at construction; protected so that benchmarks can connect to their Atlas stand-in without
+     * a console to read the credentials from.
+     */
+    protected AtlasClientV2 getAtlasClient(Configuration atlasConf) throws IOException {
         String[] atlasEndpoint = new String[]{DEFAULT_ATLAS_URL};
 
         if (atlasConf != null && ArrayUtils.isNotEmpty(atlasConf.getStringArray(APPLICATION_PROPERTY_ATLAS_ENDPOINT))) {
@@ -58,76 +134,38 @@ public class AtlasClientHelper {
 
     }
 
-    public static List<AtlasEntityHeader> getAllCatalogsInInstance(String instanceGuid) throws AtlasServiceException {
-
-        List<AtlasEntityHeader> entities = getAllRelationshipEntities(instanceGuid, "catalogs");
-        if (CollectionUtils.isNotEmpty(entities)) {
-            LOG.info("Retrieved {} catalogs of {} trino instance", entities.size(), instanceGuid);
-            return entities;
-        } else {
-            LOG.info("No catalog found under {} trino instance", instanceGuid);
-            return null;
-        }
-    }
-
-    public static List<AtlasEntityHeader> getAllSchemasInCatalog(String catalogGuid) throws AtlasServiceException {
-
-        List<AtlasEntityHeader> entities = getAllRelationshipEntities(catalogGuid, "schemas");
-        if (CollectionUtils.isNotEmpty(entities)) {
-            LOG.info("Retrieved {} schemas of {} trino catalog", entities.size(), catalogGuid);
-            return entities;
-        } else {
-            LOG.info("No schema found under {} trino catalog", catalogGuid);
-            return null;
-        }
-    }
-
-    public static List<AtlasEntityHeader> getAllTablesInSchema(String schemaGuid) throws AtlasServiceException {
-
-        List<AtlasEntityHeader> entities = getAllRelationshipEntities(schemaGuid, "tables");
-        if (CollectionUtils.isNotEmpty(entities)) {
-            LOG.info("Retrieved {} tables of {} trino schema", entities.size(), schemaGuid);
-            return entities;
-        } else {
-            LOG.info("No table found under {} trino schema", schemaGuid);
-            return null;
-        }
-    }
-
-
-    public static List<AtlasEntityHeader> getAllRelationshipEntities(String entityGuid, String relationshipAttributeName) throws AtlasServiceException {
-
-        if (entityGuid == null) {
-            return null;
+    /**
+     * Hands the entities related to entityGuid through relationshipAttributeName to the handler one page at a time,
+     * so that callers can process large relationships without holding all of them. The following pages are fetched
+     * while the handler runs; see RelationshipSearchPager.
+     */
+    public static void forEachRelationshipEntityPage(String entityGuid, String relationshipAttributeName, Consumer<List<AtlasEntityHeader>> handler) throws AtlasServiceException {
+        if (entityGuid == null || exportWriter != null) {
+            return;
         }
-        List<AtlasEntityHeader> entities = new ArrayList<>();
-        final int pageSize = pageLimit;
-
-        for (int i = 0; ; i++) {
-            int offset = pageSize * i;
-            LOG.info("Retrieving tables: offset={}, pageSize={}", offset, pageSize);
-
-            AtlasSearchResult searchResult = atlasClientV2.relationshipSearch(entityGuid, relationshipAttributeName, null, null, true, pageSize, offset);
 
-            List<AtlasEntityHeader> entityHeaders = searchResult == null ? null : searchResult.getEntities();
-            int count = entityHeaders == null ? 0 : entityHeaders.size();
+        try (RelationshipSearchPager pager = new RelationshipSearchPager(atlasClientV2, atlasLimiter, searchExecutor, entityGuid, relationshipAttributeName, pageLimit, searchPrefetchPages)) {
+            int count = 0;
 
-            LOG.info("Retrieved {} catalogs of {} instance", count, entityGuid);
+            for (List<AtlasEntityHeader> page = pager.nextPage(); page != null; page = pager.nextPage()) {
+                count += page.size();
 
-            if (count > 0) {
-                entities.addAll(entityHeaders);
+                handler.accept(page);
             }
 
-            if (count < pageSize) { // last page
-                break;
-            }
-        }
+            LOG.info("Retrieved {} {} of {}", count, relationshipAttributeName, entityGuid);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
 
-        return entities;
+            throw new AtlasServiceException(e);
+        }
     }
 
 
     public static AtlasEntityHeader getAtlasTrinoInstance(String namespace) throws AtlasServiceException {
+        if (exportWriter != null) {
+            return null;
+        }
 
         SearchParameters.FilterCriteria fc = new SearchParameters.FilterCriteria();
         fc.setAttributeName(ATTRIBUTE_QUALIFIED_NAME);
@@ -136,7 +174,7 @@ public class AtlasClientHelper {
         fc.setCondition(SearchParameters.FilterCriteria.Condition.AND);
         LOG.info("Searching for instance : {}", namespace);
 
-        AtlasSearchResult searchResult = atlasClientV2.basicSearch(TRINO_INSTANCE, fc, null, null, true, 25, 0);
+        AtlasSearchResult searchResult = callAtlas("basicSearch", TRINO_INSTANCE, "", () -> atlasClientV2.basicSearch(TRINO_INSTANCE, fc, null, null, true, 25, 0));
 
         List<AtlasEntityHeader> entityHeaders = searchResult == null ? null : searchResult.getEntities();
         if (CollectionUtils.isNotEmpty(entityHeaders)) {
@@ -148,8 +186,12 @@ public class AtlasClientHelper {
     public static AtlasEntity.AtlasEntityWithExtInfo findEntity(final String typeName, final String qualifiedName, boolean minExtInfo, boolean ignoreRelationship) throws AtlasServiceException {
         AtlasEntity.AtlasEntityWithExtInfo ret = null;
 
+        if (exportWriter != null) {
+            return null;
+        }
+
         try {
-            ret = atlasClientV2.getEntityByAttribute(typeName, Collections.singletonMap(ATTRIBUTE_QUALIFIED_NAME, qualifiedName), minExtInfo, ignoreRelationship);
+            ret = callAtlas("getEntityByAttribute", typeName, getCatalogName(typeName, qualifiedName), () -> atlasClientV2.getEntityByAttribute(typeName, Collections.singletonMap(ATTRIBUTE_QUALIFIED_NAME, qualifiedName), minExtInfo, ignoreRelationship));
         } catch (AtlasServiceException e) {
             if (e.getStatus() == ClientResponse.Status.NOT_FOUND) {
                 return null;
@@ -160,23 +202,121 @@ public class AtlasClientHelper {
         return ret;
     }
 
+    /**
+     * Cached variant of findEntity(typeName, qualifiedName, true, true), for lookups of entities the extractor doesn't
+     * create itself, like the Hive entities connectors link to. The returned entity must not be modified.
+     */
+    public static AtlasEntity.AtlasEntityWithExtInfo resolveEntity(final String typeName, final String qualifiedName) throws AtlasServiceException {
+        return resolutionCache.get(typeName, qualifiedName, () -> findEntity(typeName, qualifiedName, true, true));
+    }
+
+    /**
+     * The threads the deleteEntitiesByGuids calls of all AtlasEntityDeleters run on, delete.parallelism of them.
+     */
+    public static ExecutorService getDeleteExecutor() {
+        return deleteExecutor;
+    }
+
+    public static EntityResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
+
     public static AtlasEntity.AtlasEntityWithExtInfo createEntity(AtlasEntity.AtlasEntityWithExtInfo entity) throws Exception {
         if (LOG.isDebugEnabled()) {
             LOG.debug("creating {} entity: {}", entity.getEntity().getTypeName(), entity);
         }
 
+        if (exportWriter != null) {
+            exportWriter.add(entity);
+
+            clearRelationshipAttributes(entity);
+
+            return entity;
+        }
+
+        EntityMutationResponse response;
+
+        try {
+            String typeName = entity.getEntity().getTypeName();
+
+            response = callAtlas("createEntity", typeName, getCatalogName(typeName, (String) entity.getEntity().getAttribute(ATTRIBUTE_QUALIFIED_NAME)), () -> atlasClientV2.createEntity(entity));
+        } catch (AtlasServiceException e) {
+            if (e.getStatus() == ClientResponse.Status.NOT_FOUND) {
+                evictReferencedGuids(Collections.singletonList(entity.getEntity()), entity.getReferredEntities());
+            }
+
+            throw e;
+        }
+
+        recordMutations(response);
+
+        AtlasEntity.AtlasEntityWithExtInfo ret = verifyWrites ? readBackCreatedEntities(response) : applyGuidAssignments(entity, response);
+
+        clearRelationshipAttributes(ret);
+
+        return ret;
+    }
+
+    /**
+     * Replaces the temporary GUIDs of the locally built entities with the GUIDs Atlas assigned to them, so that the
+     * entities can be referred to without reading them back.
+     */
+    private static AtlasEntity.AtlasEntityWithExtInfo applyGuidAssignments(AtlasEntity.AtlasEntityWithExtInfo entity, EntityMutationResponse response) {
+        Map<String, String> guidAssignments = new HashMap<>();
+
+        if (MapUtils.isNotEmpty(response.getGuidAssignments())) {
+            guidAssignments.putAll(response.getGuidAssignments());
+        }
+
+        // an entity matched to an existing one by its unique attributes may not be listed in guidAssignments
+        if (!guidAssignments.containsKey(entity.getEntity().getGuid())) {
+            String            typeName = entity.getEntity().getTypeName();
+            AtlasEntityHeader header   = response.getFirstCreatedEntityByTypeName(typeName);
+
+            if (header == null) {
+                header = response.getFirstUpdatedEntityByTypeName(typeName);
+            }
+
+            if (header != null && Objects.equals(header.getAttribute(ATTRIBUTE_QUALIFIED_NAME), entity.getEntity().getAttribute(ATTRIBUTE_QUALIFIED_NAME))) {
+                guidAssignments.put(entity.getEntity().getGuid(), header.getGuid());
+            }
+        }
+
+        AtlasEntity.AtlasEntityWithExtInfo ret = new AtlasEntity.AtlasEntityWithExtInfo(applyGuidAssignment(entity.getEntity(), guidAssignments));
+
+        if (MapUtils.isNotEmpty(entity.getReferredEntities())) {
+            for (AtlasEntity referredEntity : entity.getReferredEntities().values()) {
+                ret.addReferredEntity(applyGuidAssignment(referredEntity, guidAssignments));
+            }
+        }
+
+        LOG.info("Created {} entity: name={}, guid={}", ret.getEntity().getTypeName(), ret.getEntity().getAttribute(ATTRIBUTE_QUALIFIED_NAME), ret.getEntity().getGuid());
+
+        return ret;
+    }
+
+    private static AtlasEntity applyGuidAssignment(AtlasEntity entity, Map<String, String> guidAssignments) {
+        String assignedGuid = guidAssignments.get(entity.getGuid());
+
+        if (assignedGuid != null) {
+            entity.setGuid(assignedGuid);
+        }
+
+        return entity;
+    }
+
+    private static AtlasEntity.AtlasEntityWithExtInfo readBackCreatedEntities(EntityMutationResponse response) throws AtlasServiceException {
         AtlasEntity.AtlasEntityWithExtInfo ret = null;
-        EntityMutationResponse response = atlasClientV2.createEntity(entity);
         List<AtlasEntityHeader> createdEntities = response.getEntitiesByOperation(EntityMutations.EntityOperation.CREATE);
 
         if (CollectionUtils.isNotEmpty(createdEntities)) {
             for (AtlasEntityHeader createdEntity : createdEntities) {
                 if (ret == null) {
-                    ret = atlasClientV2.getEntityByGuid(createdEntity.getGuid());
+                    ret = callAtlas("getEntityByGuid", createdEntity.getTypeName(), "", () -> atlasClientV2.getEntityByGuid(createdEntity.getGuid()));
 
                     LOG.info("Created {} entity: name={}, guid={}", ret.getEntity().getTypeName(), ret.getEntity().getAttribute(ATTRIBUTE_QUALIFIED_NAME), ret.getEntity().getGuid());
                 } else if (ret.getEntity(createdEntity.getGuid()) == null) {
-                    AtlasEntity.AtlasEntityWithExtInfo newEntity = atlasClientV2.getEntityByGuid(createdEntity.getGuid());
+                    AtlasEntity.AtlasEntityWithExtInfo newEntity = callAtlas("getEntityByGuid", createdEntity.getTypeName(), "", () -> atlasClientV2.getEntityByGuid(createdEntity.getGuid()));
 
                     ret.addReferredEntity(newEntity.getEntity());
 
@@ -191,30 +331,141 @@ public class AtlasClientHelper {
             }
         }
 
-        clearRelationshipAttributes(ret);
+        return ret;
+    }
+
+    /**
+     * Looks up an entity in the GUID index and, when not indexed, in Atlas. An indexed entity is returned as a stub
+     * holding only its GUID, qualifiedName and name.
+     */
+    private static AtlasEntity.AtlasEntityWithExtInfo lookupEntity(String typeName, String qualifiedName, String name) throws AtlasServiceException {
+        String guid = guidIndex != null ? guidIndex.getGuid(typeName, qualifiedName) : null;
+
+        if (guid != null) {
+            AtlasEntity entity = new AtlasEntity(typeName);
+
+            entity.setGuid(guid);
+            entity.setAttribute("qualifiedName", qualifiedName);
+            entity.setAttribute("name", name);
+
+            return new AtlasEntity.AtlasEntityWithExtInfo(entity);
+        }
+
+        AtlasEntity.AtlasEntityWithExtInfo ret = findEntity(typeName, qualifiedName, true, true);
+
+        if (ret != null && ret.getEntity() != null && guidIndex != null) {
+            guidIndex.put(typeName, qualifiedName, ret.getEntity().getGuid());
+        }
 
         return ret;
     }
 
-    public static void deleteByGuid(Set<String> guidTodelete) throws AtlasServiceException {
+    private static void recordMutations(EntityMutationResponse response) {
+        if (guidIndex == null || response == null) {
+            return;
+        }
 
-        if (CollectionUtils.isNotEmpty(guidTodelete)) {
+        for (EntityMutations.EntityOperation operation : Arrays.asList(EntityMutations.EntityOperation.CREATE, EntityMutations.EntityOperation.UPDATE, EntityMutations.EntityOperation.PARTIAL_UPDATE)) {
+            List<AtlasEntityHeader> headers = response.getEntitiesByOperation(operation);
 
-            for (String guid : guidTodelete) {
-                EntityMutationResponse response = atlasClientV2.deleteEntityByGuid(guid);
+            if (headers != null) {
+                for (AtlasEntityHeader header : headers) {
+                    Object qualifiedName = header.getAttribute(ATTRIBUTE_QUALIFIED_NAME);
 
-                if (response.getDeletedEntities().size() < 1) {
-                    LOG.info("Entity with guid : {} is not deleted", guid);
-                } else {
-                    LOG.info("Entity with guid : {} is deleted", guid);
+                    if (qualifiedName != null && header.getGuid() != null) {
+                        guidIndex.put(header.getTypeName(), qualifiedName.toString(), header.getGuid());
+                    }
+                }
+            }
+        }
+
+        List<AtlasEntityHeader> deletedEntities = response.getEntitiesByOperation(EntityMutations.EntityOperation.DELETE);
+        if (deletedEntities != null) {
+            for (AtlasEntityHeader header : deletedEntities) {
+                guidIndex.removeGuid(header.getGuid());
+            }
+        }
+    }
+
+    /**
+     * Atlas rejected a write because a referenced entity was not found; drop the GUIDs the write referred to from the
+     * index, so that the next attempt resolves them against Atlas again.
+     */
+    private static void evictReferencedGuids(Collection<AtlasEntity> entities, Map<String, AtlasEntity> referredEntities) {
+        if (guidIndex == null) {
+            return;
+        }
+
+        Set<String> guids = new HashSet<>();
+
+        collectGuids(entities, guids);
+
+        if (referredEntities != null) {
+            collectGuids(referredEntities.values(), guids);
+        }
+
+        LOG.warn("Atlas returned not-found; evicting {} referenced GUIDs from the index", guids.size());
+
+        guidIndex.removeGuids(guids);
+    }
+
+    private static void collectGuids(Collection<AtlasEntity> entities, Set<String> guids) {
+        if (entities == null) {
+            return;
+        }
+
+        for (AtlasEntity entity : entities) {
+            guids.add(entity.getGuid());
+
+            if (entity.getRelationshipAttributes() != null) {
+                for (Object value : entity.getRelationshipAttributes().values()) {
+                    if (value instanceof AtlasObjectId) {
+                        guids.add(((AtlasObjectId) value).getGuid());
+                    } else if (value instanceof Collection) {
+                        for (Object element : (Collection<?>) value) {
+                            if (element instanceof AtlasObjectId) {
+                                guids.add(((AtlasObjectId) element).getGuid());
+                            }
+                        }
+                    }
                 }
             }
-        } else {
-            LOG.info("No Entity to delete from Atlas");
         }
+
+        guids.remove(null);
     }
 
-    private static void clearRelationshipAttributes(AtlasEntity.AtlasEntityWithExtInfo entity) {
+    /**
+     * Deletes the given entities with a single deleteEntitiesByGuids call and returns how many of them were deleted;
+     * entities Atlas deletes along with them, like the columns of a table, are not counted.
+     */
+    public static int deleteByGuids(List<String> guids) throws AtlasServiceException {
+        if (CollectionUtils.isEmpty(guids)) {
+            return 0;
+        }
+
+        EntityMutationResponse  response        = callAtlas("deleteEntitiesByGuids", "", "", () -> atlasClientV2.deleteEntitiesByGuids(guids));
+        List<AtlasEntityHeader> deletedEntities = response == null ? null : response.getEntitiesByOperation(EntityMutations.EntityOperation.DELETE);
+
+        if (guidIndex != null) {
+            guidIndex.removeGuids(guids);
+        }
+
+        int         ret       = 0;
+        Set<String> requested = new HashSet<>(guids);
+
+        if (deletedEntities != null) {
+            for (AtlasEntityHeader deletedEntity : deletedEntities) {
+                if (requested.contains(deletedEntity.getGuid())) {
+                    ret++;
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    public static void clearRelationshipAttributes(AtlasEntity.AtlasEntityWithExtInfo entity) {
         if (entity != null) {
             clearRelationshipAttributes(entity.getEntity());
 
@@ -241,17 +492,21 @@ public class AtlasClientHelper {
 
     public static AtlasEntity.AtlasEntityWithExtInfo createTrinoInstanceEntity(String trinoNamespace) throws Exception {
         String qualifiedName = trinoNamespace;
-        AtlasEntity.AtlasEntityWithExtInfo ret = findEntity(TRINO_INSTANCE, qualifiedName, true, true);
+        AtlasEntity.AtlasEntityWithExtInfo ret = lookupEntity(TRINO_INSTANCE, qualifiedName, trinoNamespace);
 
         if (ret == null) {
             ret = new AtlasEntity.AtlasEntityWithExtInfo();
-            AtlasEntity entity = new AtlasEntity(TRINO_INSTANCE);
+            AtlasEntity entity = newEntity(TRINO_INSTANCE);
 
             entity.setAttribute("qualifiedName", qualifiedName);
             entity.setAttribute("name", trinoNamespace);
 
             ret.setEntity(entity);
             ret = createEntity(ret);
+
+            if (exportWriter != null) {
+                exportWriter.addExportItem(new AtlasObjectId(ret.getEntity().getGuid(), TRINO_INSTANCE, Collections.singletonMap(ATTRIBUTE_QUALIFIED_NAME, qualifiedName)));
+            }
         }
 
         return ret;
@@ -261,10 +516,10 @@ public class AtlasClientHelper {
         String catalogName    = catalog.getName();
         String trinoNamespace = catalog.getInstanceName();
 
-        AtlasEntity.AtlasEntityWithExtInfo ret = findEntity(TRINO_CATALOG, catalogName + "@" + trinoNamespace, true, true);
+        AtlasEntity.AtlasEntityWithExtInfo ret = lookupEntity(TRINO_CATALOG, catalogName + "@" + trinoNamespace, catalogName);
         if (ret == null) {
             ret = new AtlasEntity.AtlasEntityWithExtInfo();
-            AtlasEntity entity = new AtlasEntity(TRINO_CATALOG);
+            AtlasEntity entity = newEntity(TRINO_CATALOG);
 
             entity.setAttribute("qualifiedName", catalogName + "@" + trinoNamespace);
             entity.setAttribute("name", catalogName);
@@ -284,11 +539,11 @@ public class AtlasClientHelper {
     public static AtlasEntity.AtlasEntityWithExtInfo createTrinoSchemaEntity(Catalog catalog, AtlasEntity catalogEntity, String schema) throws Exception {
         String qualifiedName = catalog.getName() + "." + schema + "@" + catalog.getInstanceName();
 
-        AtlasEntity.AtlasEntityWithExtInfo ret = findEntity(TRINO_SCHEMA, qualifiedName, true, true);
+        AtlasEntity.AtlasEntityWithExtInfo ret = lookupEntity(TRINO_SCHEMA, qualifiedName, schema);
 
         if (ret == null) {
             ret = new AtlasEntity.AtlasEntityWithExtInfo();
-            AtlasEntity entity = new AtlasEntity(TRINO_SCHEMA);
+            AtlasEntity entity = newEntity(TRINO_SCHEMA);
 
             entity.setAttribute("qualifiedName", qualifiedName);
             entity.setAttribute("name", schema);
@@ -305,46 +560,138 @@ public class AtlasClientHelper {
         return ret;
     }
 
+    /**
+     * Runs an Atlas REST call within the concurrency limit, timed by operation, type and catalog.
+     */
+    private static <T> T callAtlas(String operation, String typeName, String catalog, ExtractorMetrics.Call<T, AtlasServiceException> call) throws AtlasServiceException {
+        return atlasLimiter.call(operation, () -> ExtractorMetrics.timeAtlasCall(operation, typeName, catalog, call));
+    }
+
+    /**
+     * Catalog name of a Trino entity, taken from its qualifiedName catalog[.schema[.table[.column]]]@instance; empty for
+     * other types and for the instance itself. Used to label metrics.
+     */
+    public static String getCatalogName(String typeName, String qualifiedName) {
+        if (qualifiedName == null || typeName == null || !typeName.startsWith("trino_") || TRINO_INSTANCE.equals(typeName)) {
+            return "";
+        }
+
+        int end = StringUtils.indexOfAny(qualifiedName, ".@");
+
+        return end < 0 ? qualifiedName : qualifiedName.substring(0, end);
+    }
+
+    public static String getTrinoTableQualifiedName(Catalog catalog, String schema, String table) {
+        return catalog.getName() + "." + schema + "." + table + "@" + catalog.getInstanceName();
+    }
+
+    public static Map<String, AtlasEntityHeader> getTrinoTablesInSchema(String schemaGuid) throws AtlasServiceException {
+        Map<String, AtlasEntityHeader> ret = new HashMap<>();
+
+        forEachRelationshipEntityPage(schemaGuid, "tables", page -> {
+            for (AtlasEntityHeader table : page) {
+                Object qualifiedName = table.getAttribute(ATTRIBUTE_QUALIFIED_NAME);
+
+                if (qualifiedName != null) {
+                    ret.put(qualifiedName.toString(), table);
+                }
+            }
+        });
+
+        return ret;
+    }
+
     public static AtlasEntity.AtlasEntityWithExtInfo getTrinoTableEntity(Catalog catalog, String schema, String table, AtlasEntity schemaEntity) throws Exception {
-        String qualifiedName = catalog.getName() + "." + schema + "." + table + "@" + catalog.getInstanceName();
+        return getTrinoTableEntity(catalog, schema, table, schemaEntity, null);
+    }
 
-        AtlasEntity.AtlasEntityWithExtInfo ret = findEntity(TRINO_TABLE, qualifiedName, true, true);
+    /**
+     * existingTables holds the trino_table headers of the schema, keyed by qualifiedName, as returned by
+     * getTrinoTablesInSchema(); when given, the table is looked up there instead of in Atlas.
+     */
+    public static AtlasEntity.AtlasEntityWithExtInfo getTrinoTableEntity(Catalog catalog, String schema, String table, AtlasEntity schemaEntity, Map<String, AtlasEntityHeader> existingTables) throws Exception {
+        String qualifiedName = getTrinoTableQualifiedName(catalog, schema, table);
+
+        AtlasEntity.AtlasEntityWithExtInfo ret = null;
+
+        if (existingTables == null) {
+            ret = lookupEntity(TRINO_TABLE, qualifiedName, table);
+        } else {
+            AtlasEntityHeader header = existingTables.get(qualifiedName);
+
+            if (header != null) {
+                ret = getTrinoTableEntity(header.getGuid(), qualifiedName, table);
+            }
+        }
 
         if (ret == null) {
-            ret = new AtlasEntity.AtlasEntityWithExtInfo();
-            AtlasEntity entity = new AtlasEntity(TRINO_TABLE);
+            ret = newTrinoTableEntity(catalog, schema, table, schemaEntity);
+        }
 
-            entity.setAttribute("qualifiedName", qualifiedName);
-            entity.setAttribute("name", table);
-            entity.setAttribute("type", "BASE_TABLE");
+        return ret;
+    }
 
-            entity.setRelationshipAttribute("schema", AtlasTypeUtil.getAtlasRelatedObjectId(schemaEntity, "trino_table_schema"));
+    /**
+     * Builds the trino_table in full, with its schema and connector relationships, without looking it up in Atlas.
+     */
+    public static AtlasEntity.AtlasEntityWithExtInfo newTrinoTableEntity(Catalog catalog, String schema, String table, AtlasEntity schemaEntity) throws Exception {
+        AtlasEntity.AtlasEntityWithExtInfo ret = new AtlasEntity.AtlasEntityWithExtInfo();
+        AtlasEntity entity = newEntity(TRINO_TABLE);
 
-            if (catalog.getConnector() != null) {
-                catalog.getConnector().connectTrinoTable(catalog.getHookInstanceName(), catalog.getName(), schema, table, entity);
-            }
-            ret.setEntity(entity);
+        entity.setAttribute("qualifiedName", getTrinoTableQualifiedName(catalog, schema, table));
+        entity.setAttribute("name", table);
+        entity.setAttribute("type", "BASE_TABLE");
+
+        entity.setRelationshipAttribute("schema", AtlasTypeUtil.getAtlasRelatedObjectId(schemaEntity, "trino_table_schema"));
+
+        if (catalog.getConnector() != null) {
+            catalog.getConnector().connectTrinoTable(catalog.getHookInstanceName(), catalog.getName(), schema, table, entity);
         }
+        ret.setEntity(entity);
 
         return ret;
     }
 
+    /**
+     * The trino_table to build the entities of an existing table on, holding only its GUID, qualifiedName and name.
+     */
+    public static AtlasEntity.AtlasEntityWithExtInfo getTrinoTableEntity(String guid, String qualifiedName, String table) {
+        AtlasEntity entity = new AtlasEntity(TRINO_TABLE);
+
+        entity.setGuid(guid);
+        entity.setAttribute("qualifiedName", qualifiedName);
+        entity.setAttribute("name", table);
+
+        return new AtlasEntity.AtlasEntityWithExtInfo(entity);
+    }
+
+    /**
+     * Reads the trino_table with its relationships and its columns in full, for TableEntityDiff; returns null when the
+     * table is not in Atlas, and when exporting.
+     */
+    public static AtlasEntity.AtlasEntityWithExtInfo getStoredTrinoTable(Catalog catalog, String schema, String table) throws AtlasServiceException {
+        String                             qualifiedName = getTrinoTableQualifiedName(catalog, schema, table);
+        AtlasEntity.AtlasEntityWithExtInfo ret           = findEntity(TRINO_TABLE, qualifiedName, false, false);
+
+        if (ret != null && ret.getEntity() != null && guidIndex != null) {
+            guidIndex.put(TRINO_TABLE, qualifiedName, ret.getEntity().getGuid());
+        }
+
+        return ret != null && ret.getEntity() != null ? ret : null;
+    }
 
-    public static AtlasEntity getTrinoColumnEntity(Catalog catalog, String schema, String tableName, Map.Entry<String, Map<String, Object>> columnEntry, AtlasEntity tableEntity) throws Exception {
-        AtlasEntity entity = new AtlasEntity(TRINO_COLUMN);
+    public static AtlasEntity getTrinoColumnEntity(Catalog catalog, String schema, String tableName, TrinoColumn column, AtlasEntity tableEntity) throws Exception {
+        AtlasEntity entity = newEntity(TRINO_COLUMN);
 
-        String columnName = columnEntry.getKey();
+        String columnName = column.getName();
         String qualifiedName = catalog.getName() + "." + schema + "." + tableName + "." + columnName + "@" + catalog.getInstanceName();
 
         entity.setAttribute("qualifiedName", qualifiedName);
         entity.setAttribute("name", columnName);
-        if (MapUtils.isNotEmpty(columnEntry.getValue())) {
-            Map<String, Object> columnAttr = columnEntry.getValue();
-            entity.setAttribute("data_type", columnAttr.get("data_type"));
-            entity.setAttribute("position", columnAttr.get("ordinal_position"));
-            entity.setAttribute("default_value", columnAttr.get("column_default"));
-            entity.setAttribute("isNullable", columnAttr.get("is_nullable"));
-        }
+        entity.setAttribute("data_type", column.getDataType());
+        entity.setAttribute("position", column.getOrdinalPosition());
+        entity.setAttribute("default_value", column.getDefaultValue());
+        entity.setAttribute("isNullable", column.isNullable());
 
         entity.setRelationshipAttribute("table", AtlasTypeUtil.getAtlasRelatedObjectId(tableEntity, "trino_table_columns"));
 
@@ -354,12 +701,54 @@ public class AtlasClientHelper {
         return entity;
     }
 
-    public static AtlasEntity.AtlasEntityWithExtInfo createTrinoTableEntity(Catalog catalog, AtlasEntity.AtlasEntityWithExtInfo tableEntityExt, AtlasEntity schemaEntity, List<AtlasEntity> columnEntities) throws Exception {
+    public static void createTrinoTableEntity(Catalog catalog, AtlasEntity.AtlasEntityWithExtInfo tableEntityExt, AtlasEntity schemaEntity, List<AtlasEntity> columnEntities) throws Exception {
+        createTrinoTableEntity(catalog, tableEntityExt, schemaEntity, columnEntities, null);
+    }
+
+    public static void createTrinoTableEntity(Catalog catalog, AtlasEntity.AtlasEntityWithExtInfo tableEntityExt, AtlasEntity schemaEntity, List<AtlasEntity> columnEntities, Runnable onWritten) throws Exception {
+        if (exportWriter != null) {
+            // the schema is an entry of the export already, so only the columns go along with the table
+            setTrinoTableColumns(tableEntityExt, null, columnEntities);
+
+            exportWriter.add(tableEntityExt);
+
+            if (onWritten != null) {
+                onWritten.run();
+            }
+
+            return;
+        }
+
+        setTrinoTableColumns(tableEntityExt, schemaEntity, columnEntities);
+
+        entityWriter.add(tableEntityExt, onWritten);
+    }
+
+    /**
+     * Adds the updated entities of an existing table to the batch writer; the removed columns are left to the caller,
+     * to be deleted from onWritten once the update is written. onWritten, when given, is run once the entities have
+     * been written.
+     */
+    public static void updateTrinoTableEntity(TableEntityDiff diff, Runnable onWritten) throws Exception {
+        if (diff.getUpdatedEntities().isEmpty()) {
+            if (onWritten != null) {
+                onWritten.run();
+            }
+
+            return;
+        }
+
+        entityWriter.add(new AtlasEntity.AtlasEntitiesWithExtInfo(diff.getUpdatedEntities()), onWritten);
+    }
+
+    public static void setTrinoTableColumns(AtlasEntity.AtlasEntityWithExtInfo tableEntityExt, AtlasEntity schemaEntity, List<AtlasEntity> columnEntities) {
         AtlasEntity entity = tableEntityExt.getEntity();
 
         entity.setRelationshipAttribute("columns", AtlasTypeUtil.getAtlasRelatedObjectIds(columnEntities, "trino_table_columns"));
 
-        tableEntityExt.addReferredEntity(schemaEntity);
+        if (schemaEntity != null) {
+            tableEntityExt.addReferredEntity(schemaEntity);
+        }
         if (columnEntities != null) {
             for (AtlasEntity column : columnEntities) {
                 tableEntityExt.addReferredEntity(column);
@@ -367,11 +756,90 @@ public class AtlasClientHelper {
         }
 
         tableEntityExt.setEntity(entity);
-        return createEntity(tableEntityExt);
+    }
+
+    public static void flushEntities() throws InterruptedException {
+        if (entityWriter != null) {
+            entityWriter.flush();
+        }
+    }
+
+    public static void awaitPendingWrites() throws InterruptedException {
+        if (entityWriter != null) {
+            entityWriter.awaitPendingWrites();
+        }
+    }
+
+    public static int getFailedWrites() {
+        return entityWriter != null ? entityWriter.getFailedBatches() + entityWriter.getFailedCallbacks() : 0;
+    }
+
+    public static boolean isExporting() {
+        return exportWriter != null;
+    }
+
+    /**
+     * Completes the export ZIP; no entities can be added after this.
+     */
+    public static void finishExport() throws IOException {
+        if (exportWriter != null) {
+            exportWriter.finish();
+        }
+    }
+
+    /**
+     * New entity of the given type; entities built for an export get their final GUID here, since the entities in
+     * the ZIP refer to each other by GUID.
+     */
+    private static AtlasEntity newEntity(String typeName) {
+        AtlasEntity ret = new AtlasEntity(typeName);
+
+        if (exportWriter != null) {
+            ret.setGuid(UUID.randomUUID().toString());
+        }
+
+        return ret;
+    }
+
+    public static void flushGuidIndex() throws IOException {
+        if (guidIndex != null) {
+            guidIndex.flush();
+        }
     }
 
     public static void close() {
-        atlasClientV2.close();
+        try {
+            if (entityWriter != null) {
+                entityWriter.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            LOG.error("Interrupted while flushing pending entities", e);
+        }
+
+        if (exportWriter != null) {
+            try {
+                exportWriter.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close the export", e);
+            }
+        }
+
+        if (guidIndex != null) {
+            try {
+                guidIndex.close();
+            } catch (IOException e) {
+                LOG.error("Failed to save GUID index", e);
+            }
+        }
+
+        searchExecutor.shutdownNow();
+        deleteExecutor.shutdownNow();
+
+        if (atlasClientV2 != null) {
+            atlasClientV2.close();
+        }
     }
 
 }
@@ -0,0 +1,205 @@
+package org.apache.atlas.trino.client;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import org.apache.atlas.AtlasServiceException;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD limit on the number of concurrent Atlas calls. Every call that completes in time while at least half the limit
+ * is in use raises the limit by 1/limit, i.e. by about one per limit calls. The limit is multiplied by backoff.ratio
+ * when Atlas answers 429 or 5xx, when a call times out, or when a call takes longer than latency.tolerance times the
+ * usual latency of its operation; at most once per usual latency, so that the calls already in flight when Atlas
+ * slowed down don't cut it repeatedly.
+ *
+ * Calls beyond the limit wait for a running call to complete; those are counted as throttled.
+ */
+public class AtlasConcurrencyLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(AtlasConcurrencyLimiter.class);
+
+    private static final String LIMITER_ENABLED           = "atlas.trino.extractor.atlas.limiter.enabled";
+    private static final String LIMITER_INITIAL           = "atlas.trino.extractor.atlas.limiter.initial";
+    private static final String LIMITER_MIN               = "atlas.trino.extractor.atlas.limiter.min";
+    private static final String LIMITER_MAX               = "atlas.trino.extractor.atlas.limiter.max";
+    private static final String LIMITER_LATENCY_TOLERANCE = "atlas.trino.extractor.atlas.limiter.latency.tolerance";
+    private static final String LIMITER_BACKOFF_RATIO     = "atlas.trino.extractor.atlas.limiter.backoff.ratio";
+
+    private static final double LATENCY_SMOOTHING = 0.05;
+    private static final int    LATENCY_WARMUP    = 10;
+
+    private final boolean                  enabled;
+    private final int                      minLimit;
+    private final int                      maxLimit;
+    private final double                   latencyTolerance;
+    private final double                   backoffRatio;
+    private final ReentrantLock            lock      = new ReentrantLock();
+    private final Condition                available = lock.newCondition();
+    private final Map<String, LatencyStat> latencies = new ConcurrentHashMap<>();
+
+    private double limit;
+    private int    inFlight;
+    private long   lastDecreaseNanos;
+
+    public AtlasConcurrencyLimiter(Configuration atlasConf) {
+        this.enabled          = atlasConf.getBoolean(LIMITER_ENABLED, true);
+        this.minLimit         = Math.max(1, atlasConf.getInt(LIMITER_MIN, 1));
+        this.maxLimit         = Math.max(minLimit, atlasConf.getInt(LIMITER_MAX, 64));
+        this.latencyTolerance = atlasConf.getDouble(LIMITER_LATENCY_TOLERANCE, 2.0);
+        this.backoffRatio     = atlasConf.getDouble(LIMITER_BACKOFF_RATIO, 0.7);
+        this.limit            = Math.min(maxLimit, Math.max(minLimit, atlasConf.getInt(LIMITER_INITIAL, 8)));
+
+        ExtractorMetrics.gauge("atlas_limiter_limit", this::getLimit);
+        ExtractorMetrics.gauge("atlas_limiter_in_flight", this::getInFlight);
+
+        LOG.info("Atlas concurrency limiter: enabled={}, initial={}, min={}, max={}, latencyTolerance={}, backoffRatio={}", enabled, (int) limit, minLimit, maxLimit, latencyTolerance, backoffRatio);
+    }
+
+    /**
+     * Runs the call once the limit allows, and adjusts the limit by its outcome.
+     */
+    public <T> T call(String operation, ExtractorMetrics.Call<T, AtlasServiceException> call) throws AtlasServiceException {
+        if (!enabled) {
+            return call.call();
+        }
+
+        try {
+            acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new AtlasServiceException(e);
+        }
+
+        long    start    = System.nanoTime();
+        boolean overload = false;
+
+        try {
+            return call.call();
+        } catch (AtlasServiceException | RuntimeException e) {
+            overload = isOverload(e);
+
+            throw e;
+        } finally {
+            release(operation, System.nanoTime() - start, overload);
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        lock.lock();
+
+        try {
+            if (inFlight >= (int) limit) {
+                ExtractorMetrics.counter("atlas_limiter_throttled_total").increment();
+
+                do {
+                    available.await();
+                } while (inFlight >= (int) limit);
+            }
+
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(String operation, long latencyNanos, boolean overload) {
+        LatencyStat stat         = latencies.computeIfAbsent(operation, o -> new LatencyStat());
+        long        usualNanos   = stat.getUsualNanos();
+        boolean     latencySpike = usualNanos > 0 && latencyNanos > usualNanos * latencyTolerance;
+
+        if (!overload) {
+            stat.record(latencyNanos);
+        }
+
+        lock.lock();
+
+        try {
+            inFlight--;
+
+            if (overload || latencySpike) {
+                long now = System.nanoTime();
+
+                if (now - lastDecreaseNanos > Math.max(usualNanos, latencyNanos / 2)) {
+                    double previous = limit;
+
+                    limit             = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+
+                    ExtractorMetrics.counter("atlas_limiter_decreases_total", "reason", overload ? "overload" : "latency").increment();
+
+                    LOG.debug("Atlas concurrency limit {} -> {}: {} of {} took {} ms", (int) previous, (int) limit, overload ? "overload" : "latency spike", operation, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+                }
+            } else if (limit < maxLimit && inFlight + 1 >= limit / 2) {
+                // raised only while the limit is in use, so that it doesn't drift up during quiet phases
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isOverload(Exception e) {
+        if (e instanceof AtlasServiceException) {
+            AtlasServiceException ase = (AtlasServiceException) e;
+
+            if (ase.getStatus() != null) {
+                int status = ase.getStatus().getStatusCode();
+
+                return status == 429 || status >= 500;
+            }
+
+            return ase.getCause() instanceof ClientHandlerException;
+        }
+
+        // connection and read timeouts surface from Jersey as ClientHandlerException
+        return e instanceof ClientHandlerException;
+    }
+
+    /**
+     * Slowly moving average of the latency of one operation, which latency spikes are measured against.
+     */
+    private static class LatencyStat {
+        private long   count;
+        private double averageNanos;
+
+        synchronized void record(long nanos) {
+            averageNanos = count == 0 ? nanos : averageNanos + LATENCY_SMOOTHING * (nanos - averageNanos);
+
+            count++;
+        }
+
+        synchronized long getUsualNanos() {
+            return count < LATENCY_WARMUP ? 0 : (long) averageNanos;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.AtlasClientV2;
+import org.apache.atlas.AtlasServiceException;
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.atlas.model.instance.EntityMutationResponse;
+import org.apache.atlas.model.instance.EntityMutations;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.atlas.type.AtlasType;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects entities with their referred entities into AtlasEntitiesWithExtInfo batches and writes each batch with a
+ * single createEntities call. A batch is flushed when it reaches the configured entity count or serialized size,
+ * when it has been pending longer than the flush interval, or when flush() is called.
+ *
+ * Batches are written on a pool of write.parallelism threads. At most two batches per writer thread can be in
+ * flight; once that limit is reached, add() and flush() block until a write completes. The writes themselves are
+ * subject to the AtlasConcurrencyLimiter, which may allow fewer of them to run at once.
+ */
+public class AtlasEntityBatchWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(AtlasEntityBatchWriter.class);
+
+    private static final String BATCH_MAX_ENTITIES       = "atlas.trino.extractor.batch.max.entities";
+    private static final String BATCH_MAX_BYTES          = "atlas.trino.extractor.batch.max.bytes";
+    private static final String BATCH_FLUSH_INTERVAL_MS  = "atlas.trino.extractor.batch.flush.interval.ms";
+    private static final String WRITE_PARALLELISM        = "atlas.trino.extractor.write.parallelism";
+
+    private final AtlasClientV2            atlasClientV2;
+    private final AtlasConcurrencyLimiter  limiter;
+    private final BatchListener            listener;
+    private final int                      maxEntities;
+    private final long                     maxBytes;
+    private final long                     flushIntervalMs;
+    private final ScheduledExecutorService flushTimer;
+    private final ExecutorService          writeExecutor;
+    private final int                      maxInFlight;
+    private final Semaphore                inFlight;
+    private final AtomicInteger            failedBatches   = new AtomicInteger();
+    private final AtomicInteger            failedCallbacks = new AtomicInteger();
+
+    private AtlasEntity.AtlasEntitiesWithExtInfo batch;
+    private volatile int                         batchEntityCount;
+    private long                                 batchBytes;
+    private long                                 batchStartTime;
+    private List<Runnable>                       batchCallbacks;
+    private int                                  unsubmittedBatches;
+
+    public AtlasEntityBatchWriter(AtlasClientV2 atlasClientV2, Configuration atlasConf) {
+        this(atlasClientV2, atlasConf, new AtlasConcurrencyLimiter(atlasConf), null);
+    }
+
+    public AtlasEntityBatchWriter(AtlasClientV2 atlasClientV2, Configuration atlasConf, AtlasConcurrencyLimiter limiter, BatchListener listener) {
+        this.atlasClientV2   = atlasClientV2;
+        this.limiter         = limiter;
+        this.listener        = listener;
+        this.maxEntities     = atlasConf.getInt(BATCH_MAX_ENTITIES, 1000);
+        this.maxBytes        = atlasConf.getLong(BATCH_MAX_BYTES, 4L * 1024 * 1024);
+        this.flushIntervalMs = atlasConf.getLong(BATCH_FLUSH_INTERVAL_MS, TimeUnit.SECONDS.toMillis(5));
+        this.flushTimer      = Executors.newSingleThreadScheduledExecutor(r -> newThread(r, "atlas-batch-flush"));
+
+        int writeParallelism = atlasConf.getInt(WRITE_PARALLELISM, 4);
+        AtomicInteger writerCount = new AtomicInteger();
+
+        this.writeExecutor = Executors.newFixedThreadPool(writeParallelism, r -> newThread(r, "atlas-writer-" + writerCount.incrementAndGet()));
+        this.maxInFlight   = writeParallelism * 2;
+        this.inFlight      = new Semaphore(maxInFlight, true);
+
+        ExtractorMetrics.gauge("write_in_flight_batches", () -> maxInFlight - inFlight.availablePermits());
+        ExtractorMetrics.gauge("write_pending_entities", () -> batchEntityCount);
+
+        this.flushTimer.scheduleWithFixedDelay(this::flushIfExpired, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        LOG.info("Atlas batch writer: maxEntities={}, maxBytes={}, flushIntervalMs={}, writeParallelism={}", maxEntities, maxBytes, flushIntervalMs, writeParallelism);
+    }
+
+    public void add(AtlasEntity.AtlasEntityWithExtInfo entity) throws InterruptedException {
+        add(entity, null);
+    }
+
+    /**
+     * onWritten, when given, is run after the batch holding the entity has been written successfully.
+     */
+    public void add(AtlasEntity.AtlasEntityWithExtInfo entity, Runnable onWritten) throws InterruptedException {
+        add(new AtlasEntity.AtlasEntitiesWithExtInfo(entity), onWritten);
+    }
+
+    /**
+     * Adds the entities to the same batch, so that onWritten runs once all of them have been written.
+     */
+    public void add(AtlasEntity.AtlasEntitiesWithExtInfo entities, Runnable onWritten) throws InterruptedException {
+        int  entityCount = entities.getEntities().size() + (entities.getReferredEntities() == null ? 0 : entities.getReferredEntities().size());
+        long entityBytes = AtlasType.toJson(entities).length();
+
+        submit(addToBatch(entities, entityCount, entityBytes, onWritten));
+    }
+
+    /**
+     * Adds the entities to the pending batch; returns the write of the previous batch when the entities didn't fit in
+     * it, to be submitted once the lock is released.
+     */
+    private synchronized Runnable addToBatch(AtlasEntity.AtlasEntitiesWithExtInfo entities, int entityCount, long entityBytes, Runnable onWritten) {
+        Runnable ret = null;
+
+        if (batchEntityCount > 0 && (batchEntityCount + entityCount > maxEntities || batchBytes + entityBytes > maxBytes)) {
+            ret = takeBatch();
+        }
+
+        if (batch == null) {
+            batch          = new AtlasEntity.AtlasEntitiesWithExtInfo();
+            batchStartTime = System.currentTimeMillis();
+            batchCallbacks = new ArrayList<>();
+        }
+
+        if (onWritten != null) {
+            batchCallbacks.add(onWritten);
+        }
+
+        for (AtlasEntity entity : entities.getEntities()) {
+            batch.addEntity(entity);
+        }
+
+        if (MapUtils.isNotEmpty(entities.getReferredEntities())) {
+            for (Map.Entry<String, AtlasEntity> entry : entities.getReferredEntities().entrySet()) {
+                batch.addReferredEntity(entry.getKey(), entry.getValue());
+            }
+        }
+
+        batchEntityCount += entityCount;
+        batchBytes       += entityBytes;
+
+        return ret;
+    }
+
+    public void flush() throws InterruptedException {
+        submit(takePendingBatch());
+    }
+
+    /**
+     * Flushes the pending batch and waits for all batches in flight to be written.
+     */
+    public void awaitPendingWrites() throws InterruptedException {
+        flush();
+
+        // a batch taken by another thread, e.g. the flush timer, is in flight once submitted
+        synchronized (this) {
+            while (unsubmittedBatches > 0) {
+                wait();
+            }
+        }
+
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    public int getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    /**
+     * Callbacks that failed after their batch was written; the work they complete, like deleting the columns removed
+     * from a table, is left undone.
+     */
+    public int getFailedCallbacks() {
+        return failedCallbacks.get();
+    }
+
+    public void close() throws InterruptedException {
+        flushTimer.shutdownNow();
+
+        awaitPendingWrites();
+
+        writeExecutor.shutdown();
+    }
+
+    private synchronized Runnable takePendingBatch() {
+        return batch == null ? null : takeBatch();
+    }
+
+    // must be called holding the lock; the returned write has to be passed to submit()
+    private Runnable takeBatch() {
+        AtlasEntity.AtlasEntitiesWithExtInfo entities    = batch;
+        int                                  entityCount = batchEntityCount;
+        long                                 bytes       = batchBytes;
+        List<Runnable>                       callbacks   = batchCallbacks;
+
+        batch            = null;
+        batchCallbacks   = null;
+        batchEntityCount = 0;
+        batchBytes       = 0;
+
+        unsubmittedBatches++;
+
+        return () -> write(entities, entityCount, bytes, callbacks);
+    }
+
+    /**
+     * Hands the write of a taken batch to the writer threads, blocking while the in-flight limit is reached; called
+     * without holding the lock, so that other producers and the flush timer can go on filling the next batch.
+     */
+    private void submit(Runnable write) throws InterruptedException {
+        if (write == null) {
+            return;
+        }
+
+        try {
+            inFlight.acquire();
+
+            try {
+                writeExecutor.execute(() -> {
+                    try {
+                        write.run();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+
+                throw e;
+            }
+        } finally {
+            synchronized (this) {
+                unsubmittedBatches--;
+
+                notifyAll();
+            }
+        }
+    }
+
+    private void write(AtlasEntity.AtlasEntitiesWithExtInfo entities, int entityCount, long bytes, List<Runnable> callbacks) {
+        long start = System.currentTimeMillis();
+
+        try {
+            EntityMutationResponse response = limiter.call("createEntities", () -> ExtractorMetrics.timeAtlasCall("createEntities", "", "", () -> atlasClientV2.createEntities(entities)));
+
+            ExtractorMetrics.counter("atlas_entities_written_total").add(entityCount);
+
+            LOG.info("Wrote batch of {} entities ({} bytes) in {} ms: created={}, updated={}", entityCount, bytes, System.currentTimeMillis() - start,
+                     getCount(response, EntityMutations.EntityOperation.CREATE), getCount(response, EntityMutations.EntityOperation.UPDATE));
+
+            if (listener != null) {
+                listener.onWritten(response);
+            }
+        } catch (AtlasServiceException | RuntimeException e) {
+            failedBatches.incrementAndGet();
+            ExtractorMetrics.counter("atlas_batches_failed_total").increment();
+
+            LOG.error("Failed to write batch of {} entities ({} bytes)", entityCount, bytes, e);
+
+            if (listener != null) {
+                listener.onFailed(entities, e);
+            }
+
+            return;
+        }
+
+        // one failing callback mustn't keep the others, like the journal completions of the batch, from running
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                failedCallbacks.incrementAndGet();
+
+                LOG.error("Callback for a written entity failed", e);
+            }
+        }
+    }
+
+    private void flushIfExpired() {
+        try {
+            submit(takeExpiredBatch());
+        } catch (Exception e) {
+            LOG.error("Failed to flush entity batch on timer", e);
+        }
+    }
+
+    private synchronized Runnable takeExpiredBatch() {
+        return batch != null && System.currentTimeMillis() - batchStartTime >= flushIntervalMs ? takeBatch() : null;
+    }
+
+    private static Thread newThread(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    private static int getCount(EntityMutationResponse response, EntityMutations.EntityOperation operation) {
+        return response == null || CollectionUtils.isEmpty(response.getEntitiesByOperation(operation)) ? 0 : response.getEntitiesByOperation(operation).size();
+    }
+
+    public interface BatchListener {
+        void onWritten(EntityMutationResponse response);
+
+        void onFailed(AtlasEntity.AtlasEntitiesWithExtInfo entities, Exception exception);
+    }
+}
@@ -0,0 +1,114 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.AtlasServiceException;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Collects stale table, schema and catalog GUIDs and deletes them bottom-up: all tables first, then schemas, then
+ * catalogs. Each level is deleted with deleteEntitiesByGuids calls of delete.batch.size GUIDs, run on the delete
+ * executor of AtlasClientHelper, so that at most delete.parallelism of them run at a time across all deleters.
+ */
+public class AtlasEntityDeleter {
+    private static final Logger LOG = LoggerFactory.getLogger(AtlasEntityDeleter.class);
+
+    private static final String DELETE_BATCH_SIZE   = "atlas.trino.extractor.delete.batch.size";
+
+    private final int         batchSize;
+    private final Set<String> tables   = new LinkedHashSet<>();
+    private final Set<String> schemas  = new LinkedHashSet<>();
+    private final Set<String> catalogs = new LinkedHashSet<>();
+
+    public AtlasEntityDeleter(Configuration atlasConf) {
+        this.batchSize = Math.max(1, atlasConf.getInt(DELETE_BATCH_SIZE, 100));
+    }
+
+    public synchronized void addTables(Collection<String> guids) {
+        tables.addAll(guids);
+    }
+
+    public synchronized void addSchemas(Collection<String> guids) {
+        schemas.addAll(guids);
+    }
+
+    public synchronized void addCatalogs(Collection<String> guids) {
+        catalogs.addAll(guids);
+    }
+
+    public synchronized boolean isEmpty() {
+        return tables.isEmpty() && schemas.isEmpty() && catalogs.isEmpty();
+    }
+
+    public synchronized void execute() throws AtlasServiceException, InterruptedException {
+        if (isEmpty()) {
+            LOG.info("No Entity to delete from Atlas");
+
+            return;
+        }
+
+        ExecutorService executor = AtlasClientHelper.getDeleteExecutor();
+
+        try {
+            int deletedTables   = delete(executor, "tables", tables);
+            int deletedSchemas  = delete(executor, "schemas", schemas);
+            int deletedCatalogs = delete(executor, "catalogs", catalogs);
+
+            LOG.info("Deleted stale entities from Atlas: tables={}/{}, schemas={}/{}, catalogs={}/{}", deletedTables, tables.size(), deletedSchemas, schemas.size(), deletedCatalogs, catalogs.size());
+        } finally {
+            tables.clear();
+            schemas.clear();
+            catalogs.clear();
+        }
+    }
+
+    private int delete(ExecutorService executor, String level, Set<String> guids) throws AtlasServiceException, InterruptedException {
+        if (CollectionUtils.isEmpty(guids)) {
+            return 0;
+        }
+
+        long                  start   = System.currentTimeMillis();
+        List<String>          all     = new ArrayList<>(guids);
+        List<Future<Integer>> batches = new ArrayList<>();
+
+        for (int i = 0; i < all.size(); i += batchSize) {
+            List<String> batch = all.subList(i, Math.min(i + batchSize, all.size()));
+
+            batches.add(executor.submit(() -> AtlasClientHelper.deleteByGuids(batch)));
+        }
+
+        int ret = 0;
+        try {
+            for (Future<Integer> batch : batches) {
+                try {
+                    ret += batch.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof AtlasServiceException) {
+                        throw (AtlasServiceException) e.getCause();
+                    }
+
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            // the executor is shared, so the batches left by a failure are cancelled here rather than by a shutdown
+            for (Future<Integer> batch : batches) {
+                batch.cancel(true);
+            }
+        }
+
+        LOG.info("Deleted {} of {} stale {} in {} batches in {} ms", ret, guids.size(), level, batches.size(), System.currentTimeMillis() - start);
+
+        return ret;
+    }
+}
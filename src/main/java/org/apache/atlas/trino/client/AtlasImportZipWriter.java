@@ -0,0 +1,190 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.model.impexp.AtlasExportRequest;
+import org.apache.atlas.model.impexp.AtlasExportResult;
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.atlas.model.instance.AtlasObjectId;
+import org.apache.atlas.model.typedef.AtlasTypesDef;
+import org.apache.atlas.type.AtlasType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes entities into a ZIP laid out like an Atlas export, which the Atlas import API loads in one request:
+ * atlas-typesdef.json, one <guid>.json per entity with its referred entities, atlas-export-order.json with the GUIDs
+ * in the order they are to be imported, and atlas-export-info.json.
+ *
+ * Entities are written as they are added and the export order is spooled to a temporary file, so memory use does not
+ * grow with the size of the export. The typesdef is empty: the trino_* types must already be registered in Atlas.
+ * A ZIP that was closed without finish() lacks the export order, so Atlas refuses to import it.
+ */
+public class AtlasImportZipWriter implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(AtlasImportZipWriter.class);
+
+    private static final String ENTRY_TYPES_DEF    = "atlas-typesdef.json";
+    private static final String ENTRY_EXPORT_ORDER = "atlas-export-order.json";
+    private static final String ENTRY_EXPORT_INFO  = "atlas-export-info.json";
+    private static final String ENTITY_METRIC      = "entity:";
+
+    private final File                file;
+    private final File                orderFile;
+    private final ZipOutputStream     zip;
+    private final Writer              orderWriter;
+    private final AtlasExportResult   result;
+    private final List<AtlasObjectId> itemsToExport = new ArrayList<>();
+
+    private long    entityCount;
+    private boolean finished;
+    private boolean closed;
+
+    public AtlasImportZipWriter(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        this.file        = file;
+        this.orderFile   = File.createTempFile("export-order", ".tmp", parent);
+        this.zip         = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        this.orderWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(orderFile), StandardCharsets.UTF_8));
+        this.result      = new AtlasExportResult(new AtlasExportRequest(), System.getProperty("user.name"), "", getHostName(), System.currentTimeMillis(), 0L);
+
+        writeEntry(ENTRY_TYPES_DEF, AtlasType.toJson(new AtlasTypesDef()));
+    }
+
+    /**
+     * Writes the entity, and its referred entities, as the next entry of the export. Entities must be added after
+     * the entities they refer to, e.g. a schema after its catalog.
+     */
+    public synchronized void add(AtlasEntity.AtlasEntityWithExtInfo entity) throws IOException {
+        if (closed) {
+            throw new IOException("Export " + file + " is already closed");
+        }
+
+        String guid = entity.getEntity().getGuid();
+
+        writeEntry(guid + ".json", AtlasType.toJson(entity));
+
+        orderWriter.write(guid);
+        orderWriter.write('\n');
+
+        result.incrementMeticsCounter(ENTITY_METRIC + entity.getEntity().getTypeName());
+
+        if (entity.getReferredEntities() != null) {
+            for (AtlasEntity referredEntity : entity.getReferredEntities().values()) {
+                result.incrementMeticsCounter(ENTITY_METRIC + referredEntity.getTypeName());
+            }
+
+            entityCount += entity.getReferredEntities().size();
+        }
+
+        entityCount++;
+    }
+
+    /**
+     * Records the entity as an item of the export request, i.e. a root of the exported entities.
+     */
+    public synchronized void addExportItem(AtlasObjectId objectId) {
+        itemsToExport.add(objectId);
+    }
+
+    /**
+     * Writes the export order and info, which makes the ZIP importable, and closes it.
+     */
+    public synchronized void finish() throws IOException {
+        if (finished || closed) {
+            return;
+        }
+
+        orderWriter.close();
+
+        zip.putNextEntry(new ZipEntry(ENTRY_EXPORT_ORDER));
+
+        Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        String guid;
+
+        writer.write('[');
+
+        try (BufferedReader reader = Files.newBufferedReader(orderFile.toPath(), StandardCharsets.UTF_8)) {
+            for (boolean first = true; (guid = reader.readLine()) != null; first = false) {
+                if (!first) {
+                    writer.write(',');
+                }
+
+                writer.write('"');
+                writer.write(guid);
+                writer.write('"');
+            }
+        }
+
+        writer.write(']');
+        writer.flush();
+
+        zip.closeEntry();
+
+        result.getRequest().setItemsToExport(itemsToExport);
+        result.setOperationStatus(AtlasExportResult.OperationStatus.SUCCESS);
+
+        writeEntry(ENTRY_EXPORT_INFO, AtlasType.toJson(result));
+
+        finished = true;
+
+        close();
+
+        LOG.info("Exported {} entities to {}: {}", entityCount, file, result.getMetrics());
+    }
+
+    public synchronized long getEntityCount() {
+        return entityCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            orderWriter.close();
+            zip.close();
+        } finally {
+            Files.deleteIfExists(orderFile.toPath());
+        }
+
+        if (!finished) {
+            LOG.warn("Export {} was not finished; it is incomplete and can't be imported", file);
+        }
+    }
+
+    private void writeEntry(String name, String json) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(json.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.trino.model.TrinoColumn;
+import org.apache.commons.lang.StringUtils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.atlas.trino.client.TrinoClientHelper.getTrinoColumn;
+import static org.apache.atlas.trino.client.TrinoClientHelper.getTrinoConnection;
+import static org.apache.atlas.trino.client.TrinoClientHelper.readTableColumns;
+
+/**
+ * Reads metadata with the DatabaseMetaData calls of the Trino JDBC driver, which builds its own queries on the
+ * system.jdbc tables. The getColumns() rows are ordered by schema, table and ordinal position, as JDBC specifies.
+ */
+public class DatabaseMetaDataMetadataSource implements MetadataSource {
+    @Override
+    public List<String> getSchemas(String catalog, String schemaToImport) throws Exception {
+        List<String> schemas = new ArrayList<>();
+
+        try (Connection connection = getTrinoConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+
+            try (ResultSet rs = metaData.getSchemas(catalog, toPattern(metaData, schemaToImport))) {
+                while (rs.next()) {
+                    schemas.add(rs.getString("TABLE_SCHEM"));
+                }
+            }
+        }
+
+        return schemas;
+    }
+
+    @Override
+    public List<String> getTables(String catalog, String schema, String tableToImport) throws Exception {
+        List<String> tables = new ArrayList<>();
+
+        try (Connection connection = getTrinoConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+
+            try (ResultSet rs = metaData.getTables(catalog, toPattern(metaData, schema), toPattern(metaData, tableToImport), null)) {
+                while (rs.next()) {
+                    tables.add(rs.getString("TABLE_NAME"));
+                }
+            }
+        }
+
+        return tables;
+    }
+
+    @Override
+    public List<TrinoColumn> getColumns(String catalog, String schema, String table) throws Exception {
+        List<TrinoColumn> columns = new ArrayList<>();
+
+        try (Connection connection = getTrinoConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+
+            try (ResultSet rs = metaData.getColumns(catalog, toPattern(metaData, schema), toPattern(metaData, table), null)) {
+                while (rs.next()) {
+                    columns.add(getTrinoColumn(rs, "COLUMN_DEF", "TYPE_NAME"));
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    @Override
+    public void getColumns(String catalog, String schema, TrinoClientHelper.TableColumnsHandler handler) throws Exception {
+        try (Connection connection = getTrinoConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+
+            try (ResultSet rs = metaData.getColumns(catalog, toPattern(metaData, schema), null, null)) {
+                readTableColumns(rs, "TABLE_SCHEM", "COLUMN_DEF", "TYPE_NAME", handler);
+            }
+        }
+    }
+
+    // a name as a LIKE pattern that matches only the name; null, which matches everything, for an empty name
+    private static String toPattern(DatabaseMetaData metaData, String name) throws Exception {
+        if (StringUtils.isEmpty(name)) {
+            return null;
+        }
+
+        String escape = metaData.getSearchStringEscape();
+
+        if (StringUtils.isEmpty(escape)) {
+            return name;
+        }
+
+        return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+}
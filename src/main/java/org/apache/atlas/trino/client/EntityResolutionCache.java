@@ -0,0 +1,104 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.AtlasServiceException;
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.commons.configuration.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of entity lookups keyed by (typeName, qualifiedName). Entities that were not found are cached as
+ * well, so that repeated lookups of a missing entity don't reach Atlas either. Entries expire after ttl.ms.
+ *
+ * Cached entities are shared between callers and must not be modified.
+ */
+public class EntityResolutionCache {
+    private static final String CACHE_SIZE   = "atlas.trino.extractor.resolution.cache.size";
+    private static final String CACHE_TTL_MS = "atlas.trino.extractor.resolution.cache.ttl.ms";
+
+    private final long                         ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong                   hits   = new AtomicLong();
+    private final AtomicLong                   misses = new AtomicLong();
+
+    public EntityResolutionCache(Configuration atlasConf) {
+        this(atlasConf.getInt(CACHE_SIZE, 100000), atlasConf.getLong(CACHE_TTL_MS, TimeUnit.MINUTES.toMillis(10)));
+    }
+
+    public EntityResolutionCache(int maxSize, long ttlMs) {
+        this.ttlMs   = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public AtlasEntity.AtlasEntityWithExtInfo get(String typeName, String qualifiedName, Loader loader) throws AtlasServiceException {
+        String key = typeName + "\t" + qualifiedName;
+        Entry  entry;
+
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+
+        AtlasEntity.AtlasEntityWithExtInfo ret = loader.load();
+
+        synchronized (entries) {
+            entries.put(key, new Entry(ret, System.currentTimeMillis() + ttlMs));
+        }
+
+        return ret;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses();
+    }
+
+    public interface Loader {
+        AtlasEntity.AtlasEntityWithExtInfo load() throws AtlasServiceException;
+    }
+
+    private static class Entry {
+        private final AtlasEntity.AtlasEntityWithExtInfo value;
+        private final long                               expiresAt;
+
+        Entry(AtlasEntity.AtlasEntityWithExtInfo value, long expiresAt) {
+            this.value     = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
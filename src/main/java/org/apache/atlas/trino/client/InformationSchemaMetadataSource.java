@@ -0,0 +1,119 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.trino.model.TrinoColumn;
+import org.apache.commons.lang.StringUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.atlas.trino.client.TrinoClientHelper.getTrinoColumn;
+import static org.apache.atlas.trino.client.TrinoClientHelper.getTrinoConnection;
+import static org.apache.atlas.trino.client.TrinoClientHelper.quoteIdentifier;
+import static org.apache.atlas.trino.client.TrinoClientHelper.readTableColumns;
+
+/**
+ * Reads metadata with SQL queries on the information_schema of each catalog; the default source.
+ */
+public class InformationSchemaMetadataSource implements MetadataSource {
+    @Override
+    public List<String> getSchemas(String catalog, String schemaToImport) throws Exception {
+        List<String>  schemas = new ArrayList<>();
+        StringBuilder query   = new StringBuilder();
+        query.append("SELECT schema_name FROM " + quoteIdentifier(catalog) + ".information_schema.schemata");
+
+        if (StringUtils.isNotEmpty(schemaToImport)) {
+            query.append(" WHERE schema_name = ?");
+        }
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            if (StringUtils.isNotEmpty(schemaToImport)) {
+                stmt.setString(1, schemaToImport);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    schemas.add(rs.getString("schema_name"));
+                }
+            }
+        }
+
+        return schemas;
+    }
+
+    @Override
+    public List<String> getTables(String catalog, String schema, String tableToImport) throws Exception {
+        List<String>  tables = new ArrayList<>();
+        StringBuilder query  = new StringBuilder();
+        query.append("SELECT table_name FROM " + quoteIdentifier(catalog) + ".information_schema.tables WHERE table_schema = ?");
+
+        if (StringUtils.isNotEmpty(tableToImport)) {
+            query.append(" AND table_name = ?");
+        }
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            stmt.setString(1, schema);
+            if (StringUtils.isNotEmpty(tableToImport)) {
+                stmt.setString(2, tableToImport);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tables.add(rs.getString("table_name"));
+                }
+            }
+        }
+
+        return tables;
+    }
+
+    @Override
+    public List<TrinoColumn> getColumns(String catalog, String schema, String table) throws Exception {
+        List<TrinoColumn> columns = new ArrayList<>();
+        String query = "SELECT column_name, ordinal_position, column_default, is_nullable, data_type FROM " + quoteIdentifier(catalog) + ".information_schema.columns WHERE table_schema = ? AND table_name = ? ORDER BY ordinal_position";
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, schema);
+            stmt.setString(2, table);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(getTrinoColumn(rs, "column_default", "data_type"));
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * Reads the columns with a single information_schema.columns query, whose rows are streamed ordered by schema and
+     * table.
+     */
+    @Override
+    public void getColumns(String catalog, String schema, TrinoClientHelper.TableColumnsHandler handler) throws Exception {
+        StringBuilder query = new StringBuilder();
+        query.append("SELECT table_schema, table_name, column_name, ordinal_position, column_default, is_nullable, data_type FROM " + quoteIdentifier(catalog) + ".information_schema.columns");
+
+        if (StringUtils.isNotEmpty(schema)) {
+            query.append(" WHERE table_schema = ?");
+        }
+        query.append(" ORDER BY table_schema, table_name, ordinal_position");
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            if (StringUtils.isNotEmpty(schema)) {
+                stmt.setString(1, schema);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                readTableColumns(rs, "table_schema", "column_default", "data_type", handler);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.trino.model.TrinoColumn;
+
+import java.util.List;
+
+/**
+ * Where TrinoClientHelper reads the schemas, tables and columns of a catalog from. Which source is fastest depends on
+ * the connector, so it is chosen per catalog; see TrinoClientHelper.
+ */
+public interface MetadataSource {
+    /**
+     * Returns the schemas of the catalog, or only schemaToImport when given.
+     */
+    List<String> getSchemas(String catalog, String schemaToImport) throws Exception;
+
+    /**
+     * Returns the tables of the schema, or only tableToImport when given.
+     */
+    List<String> getTables(String catalog, String schema, String tableToImport) throws Exception;
+
+    /**
+     * Returns the columns of the table in ordinal order.
+     */
+    List<TrinoColumn> getColumns(String catalog, String schema, String table) throws Exception;
+
+    /**
+     * Reads the columns of every table in a schema, or in the whole catalog when schema is empty, and hands the
+     * columns of each table to the handler as soon as the table is complete.
+     */
+    void getColumns(String catalog, String schema, TrinoClientHelper.TableColumnsHandler handler) throws Exception;
+
+    /**
+     * Drops what the source cached; called at the start of each run, so that a run sees the metadata of its time.
+     */
+    default void reset() {
+    }
+}
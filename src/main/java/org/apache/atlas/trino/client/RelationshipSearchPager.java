@@ -0,0 +1,166 @@
+package org.apache.atlas.trino.client;
+
+import com.sun.jersey.core.util.MultivaluedMapImpl;
+import org.apache.atlas.AtlasClientV2;
+import org.apache.atlas.AtlasServiceException;
+import org.apache.atlas.model.discovery.AtlasSearchResult;
+import org.apache.atlas.model.instance.AtlasEntityHeader;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.apache.atlas.type.AtlasTypeUtil.ATTRIBUTE_QUALIFIED_NAME;
+
+/**
+ * Pages through the entities related to an entity with relationship searches, handing out one page at a time while
+ * the following pages are fetched on the given executor. Only name and qualifiedName are requested, and the headers
+ * are trimmed to guid, typeName and those attributes, so that a page of headers stays small on the wire and on the
+ * heap.
+ *
+ * Pages past the end are requested speculatively, so up to prefetchPages - 1 searches may return nothing; once a short
+ * page is seen, searches still outstanding are cancelled.
+ */
+public class RelationshipSearchPager implements AutoCloseable {
+    private static final String   ATTRIBUTE_NAME    = "name";
+    private static final String[] RESULT_ATTRIBUTES = { ATTRIBUTE_NAME, ATTRIBUTE_QUALIFIED_NAME };
+
+    private final AtlasClientV2                         atlasClientV2;
+    private final AtlasConcurrencyLimiter               limiter;
+    private final ExecutorService                       executor;
+    private final String                                entityGuid;
+    private final String                                relationshipAttributeName;
+    private final int                                   pageSize;
+    private final int                                   prefetchPages;
+    private final Deque<Future<List<AtlasEntityHeader>>> pages = new ArrayDeque<>();
+
+    private int     nextOffset;
+    private boolean lastPageSeen;
+
+    public RelationshipSearchPager(AtlasClientV2 atlasClientV2, AtlasConcurrencyLimiter limiter, ExecutorService executor, String entityGuid, String relationshipAttributeName, int pageSize, int prefetchPages) {
+        this.atlasClientV2             = atlasClientV2;
+        this.limiter                   = limiter;
+        this.executor                  = executor;
+        this.entityGuid                = entityGuid;
+        this.relationshipAttributeName = relationshipAttributeName;
+        this.pageSize                  = pageSize;
+        this.prefetchPages             = Math.max(1, prefetchPages);
+    }
+
+    /**
+     * Returns the next page of headers, or null after the last page.
+     */
+    public List<AtlasEntityHeader> nextPage() throws AtlasServiceException, InterruptedException {
+        if (pages.isEmpty()) {
+            if (lastPageSeen) {
+                return null;
+            }
+
+            // the first page is fetched alone; most relationships fit in it and need no prefetching
+            pages.add(submit());
+        }
+
+        List<AtlasEntityHeader> ret;
+
+        try {
+            ret = pages.poll().get();
+        } catch (ExecutionException e) {
+            close();
+
+            if (e.getCause() instanceof AtlasServiceException) {
+                throw (AtlasServiceException) e.getCause();
+            }
+
+            throw new AtlasServiceException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+
+        if (ret.size() < pageSize) {
+            close();
+
+            return ret.isEmpty() ? null : ret;
+        }
+
+        while (pages.size() < prefetchPages) {
+            pages.add(submit());
+        }
+
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        lastPageSeen = true;
+
+        for (Future<List<AtlasEntityHeader>> page : pages) {
+            page.cancel(true);
+        }
+
+        pages.clear();
+    }
+
+    private Future<List<AtlasEntityHeader>> submit() {
+        int offset = nextOffset;
+
+        nextOffset += pageSize;
+
+        return executor.submit(() -> search(offset));
+    }
+
+    private List<AtlasEntityHeader> search(int offset) throws AtlasServiceException {
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
+
+        queryParams.add("guid", entityGuid);
+        queryParams.add("relation", relationshipAttributeName);
+        queryParams.add("excludeDeletedEntities", "true");
+        queryParams.add("includeClassificationAttributes", "false");
+        queryParams.add("limit", String.valueOf(pageSize));
+        queryParams.add("offset", String.valueOf(offset));
+
+        for (String attribute : RESULT_ATTRIBUTES) {
+            queryParams.add("attributes", attribute);
+        }
+
+        AtlasSearchResult       searchResult = limiter.call("relationshipSearch", () -> ExtractorMetrics.timeAtlasCall("relationshipSearch", relationshipAttributeName, "", () -> atlasClientV2.callAPI(AtlasClientV2.API_V2.RELATIONSHIP_SEARCH, AtlasSearchResult.class, queryParams)));
+        List<AtlasEntityHeader> entities     = searchResult == null ? null : searchResult.getEntities();
+
+        if (entities == null || entities.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<AtlasEntityHeader> ret = new ArrayList<>(entities.size());
+
+        for (AtlasEntityHeader entity : entities) {
+            ret.add(slim(entity));
+        }
+
+        return ret;
+    }
+
+    private static AtlasEntityHeader slim(AtlasEntityHeader header) {
+        Map<String, Object> attributes = new HashMap<>(4);
+
+        for (String attribute : RESULT_ATTRIBUTES) {
+            Object value = header.getAttribute(attribute);
+
+            if (value != null) {
+                attributes.put(attribute, value);
+            }
+        }
+
+        AtlasEntityHeader ret = new AtlasEntityHeader(header.getTypeName(), attributes);
+
+        ret.setGuid(header.getGuid());
+        ret.setStatus(header.getStatus());
+
+        return ret;
+    }
+}
@@ -0,0 +1,170 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.trino.model.TrinoColumn;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.apache.atlas.trino.client.TrinoClientHelper.getTrinoColumn;
+import static org.apache.atlas.trino.client.TrinoClientHelper.getTrinoConnection;
+import static org.apache.atlas.trino.client.TrinoClientHelper.readTableColumns;
+
+/**
+ * Reads metadata from the system.jdbc tables, which Trino answers from the catalog named in the table_cat filter
+ * only, without going through the information_schema of the connector.
+ *
+ * The tables of a catalog are listed with one streaming scan of system.jdbc.tables, on the first request for any of
+ * its schemas, and kept until reset(), instead of with a query per schema; columns are streamed from
+ * system.jdbc.columns.
+ */
+public class SystemJdbcMetadataSource implements MetadataSource {
+    private static final Logger LOG = LoggerFactory.getLogger(SystemJdbcMetadataSource.class);
+
+    // catalog -> schema -> tables
+    private final Map<String, CompletableFuture<Map<String, List<String>>>> catalogTables = new ConcurrentHashMap<>();
+
+    @Override
+    public List<String> getSchemas(String catalog, String schemaToImport) throws Exception {
+        List<String>  schemas = new ArrayList<>();
+        StringBuilder query   = new StringBuilder();
+        query.append("SELECT table_schem FROM system.jdbc.schemas WHERE table_catalog = ?");
+
+        if (StringUtils.isNotEmpty(schemaToImport)) {
+            query.append(" AND table_schem = ?");
+        }
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            stmt.setString(1, catalog);
+            if (StringUtils.isNotEmpty(schemaToImport)) {
+                stmt.setString(2, schemaToImport);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    schemas.add(rs.getString("table_schem"));
+                }
+            }
+        }
+
+        return schemas;
+    }
+
+    @Override
+    public List<String> getTables(String catalog, String schema, String tableToImport) throws Exception {
+        List<String> tables = getCatalogTables(catalog).getOrDefault(schema, Collections.emptyList());
+
+        if (StringUtils.isNotEmpty(tableToImport)) {
+            return tables.contains(tableToImport) ? Collections.singletonList(tableToImport) : Collections.emptyList();
+        }
+
+        return new ArrayList<>(tables);
+    }
+
+    @Override
+    public List<TrinoColumn> getColumns(String catalog, String schema, String table) throws Exception {
+        List<TrinoColumn> columns = new ArrayList<>();
+        String query = "SELECT column_name, ordinal_position, column_def, is_nullable, type_name FROM system.jdbc.columns WHERE table_cat = ? AND table_schem = ? AND table_name = ? ORDER BY ordinal_position";
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, catalog);
+            stmt.setString(2, schema);
+            stmt.setString(3, table);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(getTrinoColumn(rs, "column_def", "type_name"));
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    @Override
+    public void getColumns(String catalog, String schema, TrinoClientHelper.TableColumnsHandler handler) throws Exception {
+        StringBuilder query = new StringBuilder();
+        query.append("SELECT table_schem, table_name, column_name, ordinal_position, column_def, is_nullable, type_name FROM system.jdbc.columns WHERE table_cat = ?");
+
+        if (StringUtils.isNotEmpty(schema)) {
+            query.append(" AND table_schem = ?");
+        }
+        query.append(" ORDER BY table_schem, table_name, ordinal_position");
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            stmt.setString(1, catalog);
+            if (StringUtils.isNotEmpty(schema)) {
+                stmt.setString(2, schema);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                readTableColumns(rs, "table_schem", "column_def", "type_name", handler);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        catalogTables.clear();
+    }
+
+    // the first caller scans the catalog; concurrent callers wait for its result, and a failed scan is retried by the next caller
+    private Map<String, List<String>> getCatalogTables(String catalog) throws Exception {
+        CompletableFuture<Map<String, List<String>>> future  = new CompletableFuture<>();
+        CompletableFuture<Map<String, List<String>>> current = catalogTables.putIfAbsent(catalog, future);
+
+        if (current == null) {
+            try {
+                future.complete(scanTables(catalog));
+            } catch (Exception e) {
+                catalogTables.remove(catalog, future);
+                future.completeExceptionally(e);
+            }
+
+            current = future;
+        }
+
+        try {
+            return current.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private Map<String, List<String>> scanTables(String catalog) throws Exception {
+        Map<String, List<String>> ret   = new HashMap<>();
+        String                    query = "SELECT table_schem, table_name FROM system.jdbc.tables WHERE table_cat = ?";
+        int                       count = 0;
+
+        try (Connection connection = getTrinoConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, catalog);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ret.computeIfAbsent(rs.getString("table_schem"), schema -> new ArrayList<>()).add(rs.getString("table_name"));
+
+                    count++;
+                }
+            }
+        }
+
+        LOG.info("Listed {} tables in {} schemas of catalog {} from system.jdbc.tables", count, ret.size(), catalog);
+
+        return ret;
+    }
+}
@@ -0,0 +1,303 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.atlas.model.instance.AtlasObjectId;
+import org.apache.atlas.model.instance.AtlasRelatedObjectId;
+import org.apache.atlas.type.AtlasTypeUtil;
+import org.apache.commons.collections.MapUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.apache.atlas.type.AtlasTypeUtil.ATTRIBUTE_QUALIFIED_NAME;
+
+/**
+ * Difference between the trino_table and trino_column entities built from Trino and the table as stored in Atlas,
+ * read with its columns by AtlasClientHelper.getStoredTrinoTable().
+ *
+ * Only the attributes the extractor sets are compared, so that attributes added in Atlas are left alone. A changed
+ * entity is sent with its GUID, qualifiedName and changed attributes only, which Atlas applies as a partial update;
+ * new columns are sent whole, and columns no longer in Trino are deleted by GUID. Relationship attributes, like the
+ * links a connector adds to Hive or RDBMS entities, are compared only when Atlas returned them; a stored reference is
+ * the same as the built one when it has the same GUID, or the same type and qualifiedName, and is resent otherwise.
+ */
+public class TableEntityDiff {
+    private static final String TABLE_RELATIONSHIP   = "table";
+    private static final String COLUMNS_RELATIONSHIP = "columns";
+    private static final String STATUS_DELETED       = "DELETED";
+
+    private final List<AtlasEntity> updatedEntities    = new ArrayList<>();
+    private final List<String>      removedColumnGuids = new ArrayList<>();
+    private       boolean           tableChanged;
+    private       int               addedColumns;
+    private       int               changedColumns;
+
+    private TableEntityDiff() {
+    }
+
+    /**
+     * tableEntity and columnEntities are the entities built in full for the table, with tableEntity holding the GUID of
+     * the stored table.
+     */
+    public static TableEntityDiff diff(AtlasEntity.AtlasEntityWithExtInfo storedTable, AtlasEntity tableEntity, List<AtlasEntity> columnEntities) {
+        TableEntityDiff          ret              = new TableEntityDiff();
+        Map<String, AtlasEntity> referredEntities = storedTable.getReferredEntities() == null ? Collections.emptyMap() : storedTable.getReferredEntities();
+        Map<String, AtlasEntity> storedColumns    = getStoredColumns(storedTable);
+        AtlasEntity              tableUpdate      = getUpdate(storedTable.getEntity(), tableEntity, referredEntities, COLUMNS_RELATIONSHIP);
+
+        if (tableUpdate != null) {
+            ret.tableChanged = true;
+
+            ret.updatedEntities.add(tableUpdate);
+        }
+
+        for (AtlasEntity column : columnEntities) {
+            AtlasEntity storedColumn = storedColumns.remove(getQualifiedName(column));
+
+            if (storedColumn == null) {
+                ret.addedColumns++;
+
+                ret.updatedEntities.add(column);
+            } else {
+                AtlasEntity columnUpdate = getUpdate(storedColumn, column, referredEntities, TABLE_RELATIONSHIP);
+
+                if (columnUpdate != null) {
+                    ret.changedColumns++;
+
+                    ret.updatedEntities.add(columnUpdate);
+                }
+            }
+        }
+
+        for (AtlasEntity storedColumn : storedColumns.values()) {
+            ret.removedColumnGuids.add(storedColumn.getGuid());
+        }
+
+        return ret;
+    }
+
+    public boolean isEmpty() {
+        return updatedEntities.isEmpty() && removedColumnGuids.isEmpty();
+    }
+
+    /**
+     * The partial table and column updates and the new columns, to be written with a single createEntities call.
+     */
+    public List<AtlasEntity> getUpdatedEntities() {
+        return updatedEntities;
+    }
+
+    public List<String> getRemovedColumnGuids() {
+        return removedColumnGuids;
+    }
+
+    public boolean isTableChanged() {
+        return tableChanged;
+    }
+
+    public int getAddedColumns() {
+        return addedColumns;
+    }
+
+    public int getChangedColumns() {
+        return changedColumns;
+    }
+
+    public int getRemovedColumns() {
+        return removedColumnGuids.size();
+    }
+
+    @Override
+    public String toString() {
+        return "tableChanged=" + tableChanged + ", addedColumns=" + addedColumns + ", changedColumns=" + changedColumns + ", removedColumns=" + removedColumnGuids.size();
+    }
+
+    // the active trino_column entities among the referred entities of the stored table, by qualifiedName
+    private static Map<String, AtlasEntity> getStoredColumns(AtlasEntity.AtlasEntityWithExtInfo storedTable) {
+        Map<String, AtlasEntity> ret = new HashMap<>();
+
+        if (MapUtils.isNotEmpty(storedTable.getReferredEntities())) {
+            for (AtlasEntity entity : storedTable.getReferredEntities().values()) {
+                if (AtlasClientHelper.TRINO_COLUMN.equals(entity.getTypeName()) && entity.getStatus() != AtlasEntity.Status.DELETED && getQualifiedName(entity) != null) {
+                    ret.put(getQualifiedName(entity), entity);
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the entity to send to bring the stored entity up to date with the built one, or null when it is up to
+     * date. ignoredRelationships are the links between the table and its columns, which are diffed column by column.
+     */
+    private static AtlasEntity getUpdate(AtlasEntity stored, AtlasEntity built, Map<String, AtlasEntity> referredEntities, String... ignoredRelationships) {
+        AtlasEntity ret = null;
+
+        if (MapUtils.isNotEmpty(built.getAttributes())) {
+            for (Map.Entry<String, Object> attribute : built.getAttributes().entrySet()) {
+                if (!isEqual(attribute.getValue(), stored.getAttribute(attribute.getKey()))) {
+                    ret = newUpdate(ret, stored, built);
+
+                    ret.setAttribute(attribute.getKey(), attribute.getValue());
+                }
+            }
+        }
+
+        // relationships Atlas didn't return can't be compared; assume they are in place
+        if (MapUtils.isNotEmpty(built.getRelationshipAttributes()) && stored.getRelationshipAttributes() != null) {
+            for (Map.Entry<String, Object> relationship : built.getRelationshipAttributes().entrySet()) {
+                if (!isIgnored(relationship.getKey(), ignoredRelationships) && relationship.getValue() != null && !isSameReference(relationship.getValue(), stored.getRelationshipAttribute(relationship.getKey()), referredEntities)) {
+                    ret = newUpdate(ret, stored, built);
+
+                    ret.setRelationshipAttribute(relationship.getKey(), relationship.getValue());
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private static AtlasEntity newUpdate(AtlasEntity update, AtlasEntity stored, AtlasEntity built) {
+        if (update != null) {
+            return update;
+        }
+
+        AtlasEntity ret = new AtlasEntity(built.getTypeName());
+
+        ret.setGuid(stored.getGuid());
+        ret.setAttribute(ATTRIBUTE_QUALIFIED_NAME, getQualifiedName(built));
+
+        return ret;
+    }
+
+    // a missing attribute equals null, and numbers compare by value, as Atlas may return a long for an int
+    private static boolean isEqual(Object built, Object stored) {
+        if (built instanceof Number && stored instanceof Number) {
+            return ((Number) built).longValue() == ((Number) stored).longValue();
+        }
+
+        return Objects.equals(built, stored);
+    }
+
+    /**
+     * Whether the stored relationship value, as deserialized from Atlas, refers to the same entities as the built one;
+     * a reference to a deleted entity or through a deleted relationship counts as missing.
+     */
+    private static boolean isSameReference(Object built, Object stored, Map<String, AtlasEntity> referredEntities) {
+        if (built instanceof Collection || stored instanceof Collection) {
+            if (!(built instanceof Collection) || !(stored instanceof Collection)) {
+                return false;
+            }
+
+            List<Object> activeStored = new ArrayList<>();
+
+            for (Object storedElement : (Collection<?>) stored) {
+                if (!isDeleted(storedElement)) {
+                    activeStored.add(storedElement);
+                }
+            }
+
+            if (((Collection<?>) built).size() != activeStored.size()) {
+                return false;
+            }
+
+            for (Object builtElement : (Collection<?>) built) {
+                if (activeStored.stream().noneMatch(storedElement -> isSameReference(builtElement, storedElement, referredEntities))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        if (stored == null || isDeleted(stored)) {
+            return false;
+        }
+
+        String builtGuid  = getReferenceValue(built, "guid");
+        String storedGuid = getReferenceValue(stored, "guid");
+
+        if (builtGuid != null && AtlasTypeUtil.isAssignedGuid(builtGuid) && builtGuid.equals(storedGuid)) {
+            return true;
+        }
+
+        String builtType          = getReferenceValue(built, "typeName");
+        String builtQualifiedName = getReferenceQualifiedName(built);
+
+        if (builtQualifiedName == null || !Objects.equals(builtType, getReferenceValue(stored, "typeName"))) {
+            return false;
+        }
+
+        String      storedQualifiedName = getReferenceQualifiedName(stored);
+        AtlasEntity storedEntity        = storedGuid == null ? null : referredEntities.get(storedGuid);
+
+        if (storedQualifiedName == null && storedEntity != null) {
+            storedQualifiedName = getQualifiedName(storedEntity);
+        }
+
+        return builtQualifiedName.equals(storedQualifiedName);
+    }
+
+    private static boolean isDeleted(Object reference) {
+        return STATUS_DELETED.equals(getReferenceValue(reference, "entityStatus")) || STATUS_DELETED.equals(getReferenceValue(reference, "relationshipStatus"));
+    }
+
+    // a reference is built as an AtlasObjectId, and read from Atlas as a map of its JSON fields
+    private static String getReferenceValue(Object reference, String field) {
+        Object ret = null;
+
+        if (reference instanceof AtlasObjectId) {
+            AtlasObjectId objectId = (AtlasObjectId) reference;
+
+            if ("guid".equals(field)) {
+                ret = objectId.getGuid();
+            } else if ("typeName".equals(field)) {
+                ret = objectId.getTypeName();
+            } else if (reference instanceof AtlasRelatedObjectId && "entityStatus".equals(field)) {
+                ret = ((AtlasRelatedObjectId) reference).getEntityStatus();
+            } else if (reference instanceof AtlasRelatedObjectId && "relationshipStatus".equals(field)) {
+                ret = ((AtlasRelatedObjectId) reference).getRelationshipStatus();
+            }
+        } else if (reference instanceof Map) {
+            ret = ((Map<?, ?>) reference).get(field);
+        }
+
+        return ret == null ? null : ret.toString();
+    }
+
+    private static String getReferenceQualifiedName(Object reference) {
+        Object uniqueAttributes = null;
+
+        if (reference instanceof AtlasObjectId) {
+            uniqueAttributes = ((AtlasObjectId) reference).getUniqueAttributes();
+        } else if (reference instanceof Map) {
+            uniqueAttributes = ((Map<?, ?>) reference).get("uniqueAttributes");
+        }
+
+        Object ret = uniqueAttributes instanceof Map ? ((Map<?, ?>) uniqueAttributes).get(ATTRIBUTE_QUALIFIED_NAME) : null;
+
+        return ret == null ? null : ret.toString();
+    }
+
+    private static boolean isIgnored(String relationship, String[] ignoredRelationships) {
+        for (String ignored : ignoredRelationships) {
+            if (ignored.equals(relationship)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String getQualifiedName(AtlasEntity entity) {
+        Object ret = entity.getAttribute(ATTRIBUTE_QUALIFIED_NAME);
+
+        return ret == null ? null : ret.toString();
+    }
+}
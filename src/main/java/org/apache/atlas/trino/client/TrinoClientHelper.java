@@ -1,111 +1,272 @@
 package org.apache.atlas.trino.client;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.apache.atlas.trino.metrics.ExtractorMetrics;
+import org.apache.atlas.trino.model.TrinoColumn;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TrinoClientHelper {
+    private static final Logger LOG = LoggerFactory.getLogger(TrinoClientHelper.class);
+
+    private static final String POOL_NAME                         = "trino-metadata-pool";
+    private static final String POOL_MAX_SIZE                     = "atlas.trino.jdbc.pool.max.size";
+    private static final String POOL_MIN_IDLE                     = "atlas.trino.jdbc.pool.min.idle";
+    private static final String POOL_IDLE_TIMEOUT_MS              = "atlas.trino.jdbc.pool.idle.timeout.ms";
+    private static final String POOL_MAX_LIFETIME_MS              = "atlas.trino.jdbc.pool.max.lifetime.ms";
+    private static final String POOL_CONNECTION_TIMEOUT_MS        = "atlas.trino.jdbc.pool.connection.timeout.ms";
+    private static final String POOL_VALIDATION_TIMEOUT_MS        = "atlas.trino.jdbc.pool.validation.timeout.ms";
+    private static final String POOL_VALIDATION_QUERY             = "atlas.trino.jdbc.pool.validation.query";
+    private static final String POOL_LEAK_DETECTION_THRESHOLD_MS  = "atlas.trino.jdbc.pool.leak.detection.threshold.ms";
+    private static final String METADATA_SOURCE                   = "atlas.trino.extractor.metadata.source";
+    private static final String READ_PARALLELISM                  = "atlas.trino.extractor.read.parallelism";
+
+    /**
+     * INFORMATION_SCHEMA queries the information_schema of each catalog; SYSTEM_JDBC lists a catalog's tables with
+     * one scan of system.jdbc.tables and reads columns from system.jdbc.columns; DATABASE_METADATA uses the JDBC
+     * driver's DatabaseMetaData.
+     */
+    public enum MetadataSourceType { INFORMATION_SCHEMA, SYSTEM_JDBC, DATABASE_METADATA }
 
     private static String jdbcUrl;
     private static String username;
     private static String password;
+    private static HikariDataSource dataSource;
+
+    private static final AtomicLong connectionRequests = new AtomicLong();
+    private static final AtomicLong connectionWaitNanos = new AtomicLong();
+    private static final AtomicLong maxConnectionWaitNanos = new AtomicLong();
+
+    private final Map<MetadataSourceType, MetadataSource> metadataSources        = new EnumMap<>(MetadataSourceType.class);
+    private final Map<String, MetadataSourceType>         catalogMetadataSources = new HashMap<>();
+    private final MetadataSourceType                      defaultMetadataSource;
 
     public TrinoClientHelper(Configuration atlasConf) {
-        this.jdbcUrl             = atlasConf.getString("atlas.trino.jdbc.address");
-        this.username            = atlasConf.getString("atlas.trino.jdbc.user");
-        this.password            = atlasConf.getString("atlas.trino.jdbc.password", "");
-    }
+        this.jdbcUrl               = atlasConf.getString("atlas.trino.jdbc.address");
+        this.username              = atlasConf.getString("atlas.trino.jdbc.user");
+        this.password              = atlasConf.getString("atlas.trino.jdbc.password", "");
+        this.dataSource            = createDataSource(atlasConf);
+        this.defaultMetadataSource = toMetadataSourceType(atlasConf.getString(METADATA_SOURCE, MetadataSourceType.INFORMATION_SCHEMA.name()));
 
-    public static Connection getTrinoConnection() throws SQLException {
-        return DriverManager.getConnection(jdbcUrl, username, password);
-    }
+        metadataSources.put(MetadataSourceType.INFORMATION_SCHEMA, new InformationSchemaMetadataSource());
+        metadataSources.put(MetadataSourceType.SYSTEM_JDBC, new SystemJdbcMetadataSource());
+        metadataSources.put(MetadataSourceType.DATABASE_METADATA, new DatabaseMetaDataMetadataSource());
 
-    public Map<String, String> getAllTrinoCatalogs()  {
-        Map<String, String> catalogs = new HashMap<>();
-        try {
-            Connection connection = getTrinoConnection();
-            Statement stmt = connection.createStatement();
-            StringBuilder query = new StringBuilder();
-            query.append("SELECT catalog_name, connector_name FROM system.metadata.catalogs");
-
-            ResultSet rs = stmt.executeQuery(query.toString());
-            while (rs.next()) {
-                catalogs.put(rs.getString("catalog_name"), rs.getString("connector_name"));
+        Iterator<String> keys = atlasConf.getKeys(METADATA_SOURCE);
+        while (keys.hasNext()) {
+            String key = keys.next();
+
+            if (key.length() > METADATA_SOURCE.length()) {
+                catalogMetadataSources.put(key.substring(METADATA_SOURCE.length() + 1), toMetadataSourceType(atlasConf.getString(key)));
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
 
-        return catalogs;
+        if (!catalogMetadataSources.isEmpty() || defaultMetadataSource != MetadataSourceType.INFORMATION_SCHEMA) {
+            LOG.info("Metadata sources: default={}, catalogs={}", defaultMetadataSource, catalogMetadataSources);
+        }
+
+        ExtractorMetrics.gauge("trino_pool_active_connections", () -> getPoolMetrics().get("active"));
+        ExtractorMetrics.gauge("trino_pool_idle_connections", () -> getPoolMetrics().get("idle"));
+        ExtractorMetrics.gauge("trino_pool_awaiting_threads", () -> getPoolMetrics().get("awaiting"));
     }
 
-    public List<String> getTrinoSchemas(String catalog, String schemaToImport) throws SQLException {
-        List<String> schemas  = new ArrayList<>();
-        Connection connection = getTrinoConnection();
-        Statement stmt        = connection.createStatement();
-        StringBuilder query   = new StringBuilder();
-        query.append("SELECT schema_name FROM " + catalog + ".information_schema.schemata");
+    private static HikariDataSource createDataSource(Configuration atlasConf) {
+        HikariConfig config = new HikariConfig();
+
+        config.setPoolName(POOL_NAME);
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setAutoCommit(true);
+        // each reader holds a connection while a streamed column read waits on the build queue; the one more is for
+        // listing catalogs and schemas meanwhile
+        int minPoolSize = atlasConf.getInt(READ_PARALLELISM, Runtime.getRuntime().availableProcessors()) + 1;
 
-        if (StringUtils.isNotEmpty(schemaToImport)) {
-            query.append(" where schema_name = '" + schemaToImport + "'");
+        config.setMaximumPoolSize(atlasConf.getInt(POOL_MAX_SIZE, Math.max(10, minPoolSize)));
+
+        if (config.getMaximumPoolSize() < minPoolSize) {
+            LOG.warn("{}={} is less than {} + 1; readers may time out waiting for a connection", POOL_MAX_SIZE, config.getMaximumPoolSize(), READ_PARALLELISM);
         }
+        config.setMinimumIdle(atlasConf.getInt(POOL_MIN_IDLE, 1));
+        config.setIdleTimeout(atlasConf.getLong(POOL_IDLE_TIMEOUT_MS, TimeUnit.MINUTES.toMillis(10)));
+        config.setMaxLifetime(atlasConf.getLong(POOL_MAX_LIFETIME_MS, TimeUnit.MINUTES.toMillis(30)));
+        config.setConnectionTimeout(atlasConf.getLong(POOL_CONNECTION_TIMEOUT_MS, TimeUnit.SECONDS.toMillis(30)));
+        config.setValidationTimeout(atlasConf.getLong(POOL_VALIDATION_TIMEOUT_MS, TimeUnit.SECONDS.toMillis(5)));
+        config.setLeakDetectionThreshold(atlasConf.getLong(POOL_LEAK_DETECTION_THRESHOLD_MS, TimeUnit.MINUTES.toMillis(5)));
+        config.setRegisterMbeans(true);
 
-        ResultSet rs = stmt.executeQuery(query.toString());
-        while (rs.next()) {
-            schemas.add(rs.getString("schema_name"));
+        String validationQuery = atlasConf.getString(POOL_VALIDATION_QUERY);
+        if (StringUtils.isNotEmpty(validationQuery)) {
+            config.setConnectionTestQuery(validationQuery);
+        }
+
+        // connections are opened lazily, so that a Trino outage doesn't fail construction of the extractor context
+        config.setInitializationFailTimeout(-1);
+
+        LOG.info("Creating Trino connection pool: maxSize={}, minIdle={}", config.getMaximumPoolSize(), config.getMinimumIdle());
+
+        return new HikariDataSource(config);
+    }
+
+    public static Connection getTrinoConnection() throws SQLException {
+        long start = System.nanoTime();
+
+        try {
+            return dataSource.getConnection();
+        } finally {
+            long waitNanos = System.nanoTime() - start;
+
+            connectionRequests.incrementAndGet();
+            connectionWaitNanos.addAndGet(waitNanos);
+            maxConnectionWaitNanos.accumulateAndGet(waitNanos, Math::max);
         }
+    }
+
+    public static Map<String, Number> getPoolMetrics() {
+        Map<String, Number> ret      = new LinkedHashMap<>();
+        HikariPoolMXBean    poolBean = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+        long                requests = connectionRequests.get();
+
+        ret.put("active", poolBean != null ? poolBean.getActiveConnections() : 0);
+        ret.put("idle", poolBean != null ? poolBean.getIdleConnections() : 0);
+        ret.put("total", poolBean != null ? poolBean.getTotalConnections() : 0);
+        ret.put("awaiting", poolBean != null ? poolBean.getThreadsAwaitingConnection() : 0);
+        ret.put("requests", requests);
+        ret.put("avgWaitMs", requests > 0 ? TimeUnit.NANOSECONDS.toMillis(connectionWaitNanos.get() / requests) : 0);
+        ret.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxConnectionWaitNanos.get()));
 
-        return schemas;
+        return ret;
     }
 
-    public List<String> getTrinoTables(String catalog, String schema, String tableToImport) throws SQLException {
-        List<String> tables = new ArrayList<>();
-        Connection connection = getTrinoConnection();
-        Statement stmt = connection.createStatement();
-        StringBuilder query   = new StringBuilder();
-        query.append("SELECT table_name FROM " + catalog + ".information_schema.tables WHERE table_schema = '" + schema + "'");
-        if (StringUtils.isNotEmpty(tableToImport)) {
-            query.append(" where table_name = '" + tableToImport + "'");
+    public static void close() {
+        if (dataSource != null) {
+            LOG.info("Closing Trino connection pool: {}", getPoolMetrics());
+
+            dataSource.close();
         }
+    }
 
-        ResultSet rs = stmt.executeQuery(query.toString());
-        while (rs.next()) {
-            tables.add(rs.getString("table_name"));
+    /**
+     * Lists the catalogs; called at the start of each run, which is also when the metadata sources drop their caches.
+     */
+    public Map<String, String> getAllTrinoCatalogs() throws SQLException {
+        for (MetadataSource source : metadataSources.values()) {
+            source.reset();
         }
 
-        return tables;
+        return ExtractorMetrics.timeTrinoQuery("", "catalogs", () -> {
+            Map<String, String> catalogs = new HashMap<>();
+            String              query    = "SELECT catalog_name, connector_name FROM system.metadata.catalogs";
+
+            try (Connection connection = getTrinoConnection();
+                 Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    catalogs.put(rs.getString("catalog_name"), rs.getString("connector_name"));
+                }
+            }
+
+            return catalogs;
+        });
+    }
+
+    public List<String> getTrinoSchemas(String catalog, String schemaToImport) throws Exception {
+        MetadataSource source = getMetadataSource(catalog);
+
+        return ExtractorMetrics.timeTrinoQuery(catalog, "schemas", () -> source.getSchemas(catalog, schemaToImport));
+    }
+
+    public List<String> getTrinoTables(String catalog, String schema, String tableToImport) throws Exception {
+        MetadataSource source = getMetadataSource(catalog);
+
+        return ExtractorMetrics.timeTrinoQuery(catalog, "tables", () -> source.getTables(catalog, schema, tableToImport));
+    }
+
+    public List<TrinoColumn> getTrinoColumns(String catalog, String schema, String table) throws Exception {
+        MetadataSource source = getMetadataSource(catalog);
+
+        return ExtractorMetrics.timeTrinoQuery(catalog, "columns", () -> source.getColumns(catalog, schema, table));
+    }
+
+    /**
+     * Reads the columns of every table in a schema, or in the whole catalog when schema is empty, in a single
+     * streaming read. Rows arrive ordered by schema and table, and the columns of each table are handed to the handler
+     * as soon as the table is complete.
+     */
+    public void getTrinoColumns(String catalog, String schema, TableColumnsHandler handler) throws Exception {
+        MetadataSource source = getMetadataSource(catalog);
+
+        ExtractorMetrics.timeTrinoQuery(catalog, "columns_bulk", () -> {
+            source.getColumns(catalog, schema, handler);
+
+            return null;
+        });
+    }
+
+    /**
+     * Returns the source configured for the catalog by atlas.trino.extractor.metadata.source.<catalog>, or else by
+     * atlas.trino.extractor.metadata.source.
+     */
+    public MetadataSource getMetadataSource(String catalog) {
+        return metadataSources.get(catalogMetadataSources.getOrDefault(catalog, defaultMetadataSource));
     }
 
-    public Map<String, Map<String, Object>> getTrinoColumns(String catalog, String schema, String table) throws SQLException {
-        Map<String,Map<String, Object>> columns = new HashMap<>();
-        Connection connection = getTrinoConnection();
-        Statement stmt = connection.createStatement();
-        StringBuilder query   = new StringBuilder();
-        query.append("SELECT column_name, ordinal_position, column_default, is_nullable, data_type FROM " + catalog + ".information_schema.columns WHERE table_schema = '" + schema + "' AND table_name = '"+ table + "'" );
+    /**
+     * Groups rows ordered by schema and table into the columns of each table, and hands them to the handler as soon
+     * as the table is complete.
+     */
+    static void readTableColumns(ResultSet rs, String schemaLabel, String defaultLabel, String dataTypeLabel, TableColumnsHandler handler) throws Exception {
+        String currentSchema = null;
+        String currentTable  = null;
+        List<TrinoColumn> columns = new ArrayList<>();
 
-        ResultSet rs = stmt.executeQuery(query.toString());
         while (rs.next()) {
-            Map<String, Object> columnMetadata = new HashMap<>();
-            columnMetadata.put("ordinal_position",rs.getInt("ordinal_position"));
-            columnMetadata.put("column_default",rs.getString("column_default"));
-            columnMetadata.put("column_name",rs.getString("column_name"));
-            if (StringUtils.isNotEmpty(rs.getString("is_nullable"))) {
-                if (StringUtils.equalsIgnoreCase(rs.getString("is_nullable"), "YES")) {
-                    columnMetadata.put("is_nullable", true);
-                } else {
-                    columnMetadata.put("is_nullable", false);
-                }
+            String tableSchema = rs.getString(schemaLabel);
+            String tableName   = rs.getString("table_name");
+
+            if (currentTable != null && (!currentTable.equals(tableName) || !currentSchema.equals(tableSchema))) {
+                handler.handle(currentSchema, currentTable, columns);
+                columns = new ArrayList<>(columns.size());
             }
-            columnMetadata.put("data_type",rs.getString("data_type"));
+            currentSchema = tableSchema;
+            currentTable  = tableName;
+
+            columns.add(getTrinoColumn(rs, defaultLabel, dataTypeLabel));
+        }
 
-            columns.put(rs.getString("column_name"), columnMetadata);
+        if (currentTable != null) {
+            handler.handle(currentSchema, currentTable, columns);
         }
+    }
+
+    static TrinoColumn getTrinoColumn(ResultSet rs, String defaultLabel, String dataTypeLabel) throws SQLException {
+        return new TrinoColumn(rs.getString("column_name"), rs.getString(dataTypeLabel), rs.getInt("ordinal_position"), rs.getString(defaultLabel), rs.getString("is_nullable"));
+    }
+
+    static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static MetadataSourceType toMetadataSourceType(String value) {
+        return MetadataSourceType.valueOf(value.trim().toUpperCase());
+    }
 
-        return columns;
+    public interface TableColumnsHandler {
+        void handle(String schema, String table, List<TrinoColumn> columns) throws Exception;
     }
 }
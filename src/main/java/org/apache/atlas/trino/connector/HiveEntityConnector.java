@@ -42,7 +42,7 @@ public class HiveEntityConnector extends AtlasEntityConnector {
     private AtlasEntity toDbEntity(String instanceName, String schemaName) throws Exception {
         String      dbName          = schemaName;
         String      dbQualifiedName = schemaName + "@" + instanceName;
-        AtlasEntity.AtlasEntityWithExtInfo ret = AtlasClientHelper.findEntity(HIVE_DB, dbQualifiedName, true, true);
+        AtlasEntity.AtlasEntityWithExtInfo ret = AtlasClientHelper.resolveEntity(HIVE_DB, dbQualifiedName);
         AtlasEntity hiveDb = null;
         if (ret == null || ret.getEntity() == null) {
             hiveDb = new AtlasEntity(HIVE_DB);
@@ -56,7 +56,7 @@ public class HiveEntityConnector extends AtlasEntityConnector {
 
     private AtlasEntity toTableEntity(String instanceName, String schemaName, String tableName) throws Exception {
         String      tableQualifiedName = schemaName + "." + tableName + "@" + instanceName;
-        AtlasEntity.AtlasEntityWithExtInfo ret = AtlasClientHelper.findEntity(HIVE_TABLE, tableQualifiedName, true, true);
+        AtlasEntity.AtlasEntityWithExtInfo ret = AtlasClientHelper.resolveEntity(HIVE_TABLE, tableQualifiedName);
         AtlasEntity hiveTable = null;
         if (ret == null || ret.getEntity() == null) {
             hiveTable = new AtlasEntity(HIVE_TABLE);
@@ -70,7 +70,7 @@ public class HiveEntityConnector extends AtlasEntityConnector {
 
     private AtlasEntity toColumnEntity(String instanceName, String schemaName, String tableName, String columnName) throws Exception {
         String      columnQualifiedName = schemaName + "." + tableName + "." + columnName + "@" + instanceName;
-        AtlasEntity.AtlasEntityWithExtInfo ret = AtlasClientHelper.findEntity(HIVE_COLUMN, columnQualifiedName, true, true);
+        AtlasEntity.AtlasEntityWithExtInfo ret = AtlasClientHelper.resolveEntity(HIVE_COLUMN, columnQualifiedName);
         AtlasEntity hiveColumn = null;
         if (ret == null || ret.getEntity() == null) {
             hiveColumn = new AtlasEntity(HIVE_COLUMN);
@@ -0,0 +1,287 @@
+package org.apache.atlas.trino.metrics;
+
+import org.apache.atlas.AtlasServiceException;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the extractor's timers, counters and gauges. Metrics are identified by name and label pairs, and are
+ * published over JMX as attributes of org.apache.atlas.trino:type=ExtractorMetrics and, when metrics.http.port is set,
+ * in Prometheus text format at http://host:port/metrics.
+ */
+public final class ExtractorMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(ExtractorMetrics.class);
+
+    private static final String METRICS_JMX_ENABLED = "atlas.trino.extractor.metrics.jmx.enabled";
+    private static final String METRICS_HTTP_PORT   = "atlas.trino.extractor.metrics.http.port";
+    private static final String OBJECT_NAME         = "org.apache.atlas.trino:type=ExtractorMetrics";
+    private static final String PREFIX              = "trino_extractor_";
+
+    private static final Map<String, Timer>            timers   = new ConcurrentHashMap<>();
+    private static final Map<String, Counter>          counters = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<Number>> gauges   = new ConcurrentHashMap<>();
+
+    private static ObjectName        objectName;
+    private static MetricsHttpServer httpServer;
+
+    private ExtractorMetrics() {
+    }
+
+    public static synchronized void start(Configuration atlasConf) throws Exception {
+        if (objectName == null && atlasConf.getBoolean(METRICS_JMX_ENABLED, true)) {
+            objectName = new ObjectName(OBJECT_NAME);
+
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), objectName);
+        }
+
+        int httpPort = atlasConf.getInt(METRICS_HTTP_PORT, 0);
+
+        if (httpServer == null && httpPort > 0) {
+            httpServer = new MetricsHttpServer(httpPort);
+
+            httpServer.start();
+        }
+    }
+
+    public static synchronized void stop() {
+        if (httpServer != null) {
+            httpServer.stop();
+
+            httpServer = null;
+        }
+
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOG.warn("Failed to unregister {}", objectName, e);
+            }
+
+            objectName = null;
+        }
+    }
+
+    public static Timer timer(String name, String... labels) {
+        return timers.computeIfAbsent(series(PREFIX + name, labels), s -> new Timer());
+    }
+
+    public static Counter counter(String name, String... labels) {
+        return counters.computeIfAbsent(series(PREFIX + name, labels), s -> new Counter());
+    }
+
+    /**
+     * Registers a gauge, replacing any earlier gauge of the same name and labels.
+     */
+    public static void gauge(String name, Supplier<Number> value, String... labels) {
+        gauges.put(series(PREFIX + name, labels), value);
+    }
+
+    public static <T, E extends Exception> T timeTrinoQuery(String catalog, String operation, Call<T, E> call) throws E {
+        return time("trino_query", call, "catalog", catalog, "operation", operation);
+    }
+
+    public static <T, E extends Exception> T timeAtlasCall(String operation, String typeName, String catalog, Call<T, E> call) throws E {
+        return time("atlas_call", call, "catalog", catalog, "operation", operation, "type", typeName);
+    }
+
+    /**
+     * Records the duration of call in the timer name_seconds, and counts its failures in name_errors_total with an
+     * additional "error" label: the HTTP status for Atlas calls, the exception class otherwise.
+     */
+    private static <T, E extends Exception> T time(String name, Call<T, E> call, String... labels) throws E {
+        long start = System.nanoTime();
+
+        try {
+            return call.call();
+        } catch (Exception e) {
+            String[] errorLabels = new String[labels.length + 2];
+
+            System.arraycopy(labels, 0, errorLabels, 0, labels.length);
+
+            errorLabels[labels.length]     = "error";
+            errorLabels[labels.length + 1] = getErrorLabel(e);
+
+            counter(name + "_errors_total", errorLabels).increment();
+
+            throw e;
+        } finally {
+            timer(name + "_seconds", labels).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * All metrics in Prometheus text exposition format.
+     */
+    public static String toPrometheusText() {
+        StringBuilder sb = new StringBuilder();
+
+        appendFamilies(sb, "counter", new TreeMap<>(counters), Counter::get);
+        appendFamilies(sb, "gauge", new TreeMap<>(gauges), Supplier::get);
+
+        Map<String, Timer> sortedTimers = new TreeMap<>(timers);
+        String             family       = null;
+
+        for (Map.Entry<String, Timer> entry : sortedTimers.entrySet()) {
+            String name   = nameOf(entry.getKey());
+            String labels = entry.getKey().substring(name.length());
+
+            if (!name.equals(family)) {
+                family = name;
+
+                sb.append("# TYPE ").append(name).append(" summary\n");
+            }
+
+            sb.append(name).append("_count").append(labels).append(' ').append(entry.getValue().getCount()).append('\n');
+            sb.append(name).append("_sum").append(labels).append(' ').append(entry.getValue().getTotalSeconds()).append('\n');
+        }
+
+        family = null;
+
+        for (Map.Entry<String, Timer> entry : sortedTimers.entrySet()) {
+            String name   = nameOf(entry.getKey());
+            String labels = entry.getKey().substring(name.length());
+
+            if (!name.equals(family)) {
+                family = name;
+
+                sb.append("# TYPE ").append(name).append("_max gauge\n");
+            }
+
+            sb.append(name).append("_max").append(labels).append(' ').append(entry.getValue().getMaxSeconds()).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    static Map<String, Timer> getTimers() {
+        return timers;
+    }
+
+    static Map<String, Counter> getCounters() {
+        return counters;
+    }
+
+    static Map<String, Supplier<Number>> getGauges() {
+        return gauges;
+    }
+
+    private static <V> void appendFamilies(StringBuilder sb, String type, Map<String, V> metrics, Function<V, Number> reader) {
+        String family = null;
+
+        for (Map.Entry<String, V> entry : metrics.entrySet()) {
+            Number value;
+
+            try {
+                value = reader.apply(entry.getValue());
+            } catch (RuntimeException e) {
+                continue; // gauge of a component that is gone
+            }
+
+            if (value == null) {
+                continue;
+            }
+
+            String name = nameOf(entry.getKey());
+
+            if (!name.equals(family)) {
+                family = name;
+
+                sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            }
+
+            sb.append(entry.getKey()).append(' ').append(value).append('\n');
+        }
+    }
+
+    // name{label="value",...}, which is both the Prometheus series and the JMX attribute name
+    private static String series(String name, String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+
+        StringBuilder sb = new StringBuilder(name).append('{');
+
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+
+            sb.append(labels[i]).append("=\"").append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+
+        return sb.append('}').toString();
+    }
+
+    private static String nameOf(String series) {
+        int idx = series.indexOf('{');
+
+        return idx < 0 ? series : series.substring(0, idx);
+    }
+
+    private static String getErrorLabel(Exception e) {
+        if (e instanceof AtlasServiceException && ((AtlasServiceException) e).getStatus() != null) {
+            return String.valueOf(((AtlasServiceException) e).getStatus().getStatusCode());
+        }
+
+        Throwable cause = e instanceof AtlasServiceException && e.getCause() != null ? e.getCause() : e;
+
+        return cause.getClass().getSimpleName();
+    }
+
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    public static class Timer {
+        private final AtomicLong count      = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos   = new AtomicLong();
+
+        public void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getTotalSeconds() {
+            return totalNanos.get() / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+
+        public double getMaxSeconds() {
+            return maxNanos.get() / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    public static class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+}
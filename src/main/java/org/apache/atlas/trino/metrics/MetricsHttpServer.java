@@ -0,0 +1,59 @@
+package org.apache.atlas.trino.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves ExtractorMetrics in Prometheus text format at /metrics, from a single daemon thread.
+ */
+class MetricsHttpServer {
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    private final HttpServer      server;
+    private final ExecutorService executor;
+
+    MetricsHttpServer(int port) throws IOException {
+        this.server   = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+
+        LOG.info("Serving metrics at http://{}:{}/metrics", server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = ExtractorMetrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
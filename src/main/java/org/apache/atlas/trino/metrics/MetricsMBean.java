@@ -0,0 +1,109 @@
+package org.apache.atlas.trino.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-only JMX view of ExtractorMetrics. There is one attribute per counter and gauge series, and three per timer
+ * series: .count, .sumSeconds and .maxSeconds. The attribute set grows as new series are recorded.
+ */
+class MetricsMBean implements DynamicMBean {
+    private static final String COUNT       = ".count";
+    private static final String SUM_SECONDS = ".sumSeconds";
+    private static final String MAX_SECONDS = ".maxSeconds";
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        ExtractorMetrics.Counter counter = ExtractorMetrics.getCounters().get(attribute);
+        if (counter != null) {
+            return counter.get();
+        }
+
+        Supplier<Number> gauge = ExtractorMetrics.getGauges().get(attribute);
+        if (gauge != null) {
+            Number value = gauge.get();
+
+            return value == null ? null : value.doubleValue();
+        }
+
+        for (String suffix : new String[] { COUNT, SUM_SECONDS, MAX_SECONDS }) {
+            if (attribute.endsWith(suffix)) {
+                ExtractorMetrics.Timer timer = ExtractorMetrics.getTimers().get(attribute.substring(0, attribute.length() - suffix.length()));
+
+                if (timer != null) {
+                    switch (suffix) {
+                        case COUNT:
+                            return (double) timer.getCount();
+                        case SUM_SECONDS:
+                            return timer.getTotalSeconds();
+                        default:
+                            return timer.getMaxSeconds();
+                    }
+                }
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList ret = new AttributeList();
+
+        for (String attribute : attributes) {
+            try {
+                ret.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException | RuntimeException e) {
+                // skipped, as DynamicMBean.getAttributes() allows
+            }
+        }
+
+        return ret;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+
+        for (String series : new TreeMap<>(ExtractorMetrics.getCounters()).keySet()) {
+            attributes.add(new MBeanAttributeInfo(series, Long.class.getName(), "counter", true, false, false));
+        }
+
+        for (String series : new TreeMap<>(ExtractorMetrics.getGauges()).keySet()) {
+            attributes.add(new MBeanAttributeInfo(series, Double.class.getName(), "gauge", true, false, false));
+        }
+
+        for (Map.Entry<String, ExtractorMetrics.Timer> entry : new TreeMap<>(ExtractorMetrics.getTimers()).entrySet()) {
+            attributes.add(new MBeanAttributeInfo(entry.getKey() + COUNT, Double.class.getName(), "number of calls", true, false, false));
+            attributes.add(new MBeanAttributeInfo(entry.getKey() + SUM_SECONDS, Double.class.getName(), "total duration of calls", true, false, false));
+            attributes.add(new MBeanAttributeInfo(entry.getKey() + MAX_SECONDS, Double.class.getName(), "longest call", true, false, false));
+        }
+
+        return new MBeanInfo(getClass().getName(), "Trino metadata extractor metrics", attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+}
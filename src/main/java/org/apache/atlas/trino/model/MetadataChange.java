@@ -0,0 +1,68 @@
+package org.apache.atlas.trino.model;
+
+import java.util.Objects;
+
+/**
+ * A schema or table whose metadata changed in Trino, e.g. by CREATE, ALTER, DROP or RENAME, and has to be refreshed
+ * in Atlas. table is null for a change of the schema itself.
+ */
+public class MetadataChange {
+    private final String catalog;
+    private final String schema;
+    private final String table;
+
+    private MetadataChange(String catalog, String schema, String table) {
+        this.catalog = catalog;
+        this.schema  = schema;
+        this.table   = table;
+    }
+
+    public static MetadataChange ofSchema(String catalog, String schema) {
+        return new MetadataChange(catalog, schema, null);
+    }
+
+    public static MetadataChange ofTable(String catalog, String schema, String table) {
+        return new MetadataChange(catalog, schema, table);
+    }
+
+    public String getCatalog() {
+        return catalog;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public boolean isSchemaChange() {
+        return table == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof MetadataChange)) {
+            return false;
+        }
+
+        MetadataChange other = (MetadataChange) o;
+
+        return Objects.equals(catalog, other.catalog) && Objects.equals(schema, other.schema) && Objects.equals(table, other.table);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(catalog, schema, table);
+    }
+
+    @Override
+    public String toString() {
+        return table == null ? catalog + "." + schema : catalog + "." + schema + "." + table;
+    }
+}
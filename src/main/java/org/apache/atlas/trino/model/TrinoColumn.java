@@ -0,0 +1,85 @@
+package org.apache.atlas.trino.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A column as read from Trino. Data types are interned, as a catalog has millions of columns but only a few distinct
+ * types.
+ */
+public final class TrinoColumn {
+    private static final int                           MAX_INTERNED_DATA_TYPES = 10000;
+    private static final ConcurrentMap<String, String> DATA_TYPES              = new ConcurrentHashMap<>();
+
+    private static final byte NULLABLE_UNKNOWN = 0;
+    private static final byte NULLABLE_YES     = 1;
+    private static final byte NULLABLE_NO      = 2;
+
+    private final String name;
+    private final String dataType;
+    private final String defaultValue;
+    private final int    ordinalPosition;
+    private final byte   nullable;
+
+    /**
+     * isNullable is the YES/NO of information_schema and JDBC metadata; empty or null when not known.
+     */
+    public TrinoColumn(String name, String dataType, int ordinalPosition, String defaultValue, String isNullable) {
+        this.name            = name;
+        this.dataType        = intern(dataType);
+        this.ordinalPosition = ordinalPosition;
+        this.defaultValue    = defaultValue;
+        this.nullable        = isNullable == null || isNullable.isEmpty() ? NULLABLE_UNKNOWN : "YES".equalsIgnoreCase(isNullable) ? NULLABLE_YES : NULLABLE_NO;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public int getOrdinalPosition() {
+        return ordinalPosition;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Returns whether the column is nullable, or null when Trino didn't tell.
+     */
+    public Boolean isNullable() {
+        return nullable == NULLABLE_UNKNOWN ? null : nullable == NULLABLE_YES;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + dataType;
+    }
+
+    private static String intern(String dataType) {
+        if (dataType == null) {
+            return null;
+        }
+
+        String ret = DATA_TYPES.get(dataType);
+
+        if (ret == null) {
+            // e.g. varchar(n) with many distinct n; past the limit new types are simply not shared
+            if (DATA_TYPES.size() >= MAX_INTERNED_DATA_TYPES) {
+                return dataType;
+            }
+
+            ret = DATA_TYPES.putIfAbsent(dataType, dataType);
+
+            if (ret == null) {
+                ret = dataType;
+            }
+        }
+
+        return ret;
+    }
+}
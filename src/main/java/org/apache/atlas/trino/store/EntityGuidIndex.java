@@ -0,0 +1,167 @@
+package org.apache.atlas.trino.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index from (typeName, qualifiedName) to the GUID of the entity in Atlas.
+ *
+ * The index is held in memory and backed by an append-only log file with one "P" (put) or "D" (delete) record per
+ * line. The log is replayed on open and rewritten with only the live entries when it is closed.
+ */
+public class EntityGuidIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(EntityGuidIndex.class);
+
+    private static final char   OP_PUT    = 'P';
+    private static final char   OP_DELETE = 'D';
+    private static final char   SEPARATOR = '\t';
+
+    private final File                file;
+    private final Map<String, String> guidByKey = new ConcurrentHashMap<>();
+    private final Map<String, String> keyByGuid = new ConcurrentHashMap<>();
+    private BufferedWriter            log;
+
+    public EntityGuidIndex(File file) throws IOException {
+        this.file = file;
+
+        load();
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        this.log = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public String getGuid(String typeName, String qualifiedName) {
+        return guidByKey.get(toKey(typeName, qualifiedName));
+    }
+
+    public void put(String typeName, String qualifiedName, String guid) {
+        String key      = toKey(typeName, qualifiedName);
+        String previous = guidByKey.put(key, guid);
+
+        if (!guid.equals(previous)) {
+            if (previous != null) {
+                keyByGuid.remove(previous);
+            }
+
+            keyByGuid.put(guid, key);
+
+            append(OP_PUT, key, guid);
+        }
+    }
+
+    public void removeGuid(String guid) {
+        String key = keyByGuid.remove(guid);
+
+        if (key != null && guidByKey.remove(key, guid)) {
+            append(OP_DELETE, key, guid);
+        }
+    }
+
+    public void removeGuids(Collection<String> guids) {
+        for (String guid : guids) {
+            removeGuid(guid);
+        }
+    }
+
+    public int size() {
+        return guidByKey.size();
+    }
+
+    public synchronized void flush() throws IOException {
+        log.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        log.close();
+
+        compact();
+    }
+
+    private synchronized void append(char op, String key, String guid) {
+        try {
+            log.write(op);
+            log.write(SEPARATOR);
+            log.write(guid);
+            log.write(SEPARATOR);
+            log.write(key);
+            log.newLine();
+        } catch (IOException e) {
+            LOG.warn("Failed to append to GUID index {}", file, e);
+        }
+    }
+
+    private void compact() throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : guidByKey.entrySet()) {
+                writer.write(OP_PUT);
+                writer.write(SEPARATOR);
+                writer.write(entry.getValue());
+                writer.write(SEPARATOR);
+                writer.write(entry.getKey());
+                writer.newLine();
+            }
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOG.info("Saved {} entries to GUID index {}", guidByKey.size(), file);
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                int guidEnd = line.indexOf(SEPARATOR, 2);
+
+                if (line.length() < 3 || guidEnd < 0) {
+                    continue; // truncated record at the end of an interrupted run
+                }
+
+                String guid = line.substring(2, guidEnd);
+                String key  = line.substring(guidEnd + 1);
+
+                if (line.charAt(0) == OP_PUT) {
+                    String previous = guidByKey.put(key, guid);
+
+                    if (previous != null) {
+                        keyByGuid.remove(previous);
+                    }
+
+                    keyByGuid.put(guid, key);
+                } else if (line.charAt(0) == OP_DELETE) {
+                    guidByKey.remove(key, guid);
+                    keyByGuid.remove(guid);
+                }
+            }
+        }
+
+        LOG.info("Loaded {} entries from GUID index {}", guidByKey.size(), file);
+    }
+
+    private static String toKey(String typeName, String qualifiedName) {
+        return typeName + SEPARATOR + qualifiedName;
+    }
+}
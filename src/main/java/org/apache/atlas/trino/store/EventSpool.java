@@ -0,0 +1,194 @@
+package org.apache.atlas.trino.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tails the newline-delimited records of the files in a spool directory, e.g. the JSON records a Trino event listener
+ * writes, and keeps how far each file has been read in a tab separated offsets file.
+ *
+ * poll() hands out the complete records appended since the last poll; commit() persists the position reached, and
+ * rollback() returns to the last committed position, so that records whose processing failed are handed out again,
+ * also after a restart. A file that shrank is taken to have been rotated and is read again from the start.
+ */
+public class EventSpool {
+    private static final Logger LOG = LoggerFactory.getLogger(EventSpool.class);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File              dir;
+    private final File              offsetsFile;
+    private final int               maxRecordsPerPoll;
+    private final Map<String, Long> committedOffsets = new TreeMap<>();
+    private final Map<String, Long> offsets          = new HashMap<>();
+
+    public EventSpool(File dir, File offsetsFile, int maxRecordsPerPoll) throws IOException {
+        this.dir               = dir;
+        this.offsetsFile       = offsetsFile;
+        this.maxRecordsPerPoll = maxRecordsPerPoll;
+
+        load();
+
+        offsets.putAll(committedOffsets);
+    }
+
+    /**
+     * Returns the complete records appended to the spool files since the last poll, oldest file first, at most
+     * maxRecordsPerPoll of them.
+     */
+    public synchronized List<String> poll() throws IOException {
+        List<String> ret   = new ArrayList<>();
+        File[]       files = dir.listFiles(file -> file.isFile() && !file.getName().startsWith("."));
+
+        if (files == null) {
+            return ret;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+
+        for (File file : files) {
+            if (ret.size() >= maxRecordsPerPoll) {
+                break;
+            }
+
+            long offset = offsets.getOrDefault(file.getName(), 0L);
+
+            if (file.length() < offset) {
+                LOG.info("{} shrank below the offset read; reading it again from the start", file);
+
+                offset = 0;
+            }
+
+            if (file.length() > offset) {
+                offsets.put(file.getName(), readRecords(file, offset, ret));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Persists the position reached by the polls so far.
+     */
+    public synchronized void commit() throws IOException {
+        committedOffsets.clear();
+
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            // files removed from the spool are forgotten
+            if (new File(dir, entry.getKey()).exists()) {
+                committedOffsets.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        offsets.keySet().retainAll(committedOffsets.keySet());
+
+        save();
+    }
+
+    /**
+     * Returns to the last committed position.
+     */
+    public synchronized void rollback() {
+        offsets.clear();
+        offsets.putAll(committedOffsets);
+    }
+
+    // reads the complete records after offset into records; returns the offset after the last complete record read
+    private long readRecords(File file, long offset, List<String> records) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            byte[]                buffer = new byte[READ_BUFFER_SIZE];
+            long                  end    = raf.length();
+            long                  pos    = offset;
+            long                  ret    = offset;
+
+            raf.seek(offset);
+
+            while (pos < end && records.size() < maxRecordsPerPoll) {
+                int len = raf.read(buffer, 0, (int) Math.min(buffer.length, end - pos));
+
+                if (len <= 0) {
+                    break;
+                }
+
+                for (int i = 0; i < len && records.size() < maxRecordsPerPoll; i++) {
+                    if (buffer[i] == '\n') {
+                        String line = new String(record.toByteArray(), StandardCharsets.UTF_8).trim();
+
+                        if (!line.isEmpty()) {
+                            records.add(line);
+                        }
+
+                        record.reset();
+
+                        ret = pos + i + 1;
+                    } else {
+                        record.write(buffer[i]);
+                    }
+                }
+
+                pos += len;
+            }
+
+            // a record without its line break yet is still being written; it is read on a later poll
+            return ret;
+        }
+    }
+
+    private void save() throws IOException {
+        File parent = offsetsFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        File tmpFile = new File(offsetsFile.getPath() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : committedOffsets.entrySet()) {
+                writer.write(Long.toString(entry.getValue()));
+                writer.write('\t');
+                writer.write(entry.getKey());
+                writer.newLine();
+            }
+        }
+
+        Files.move(tmpFile.toPath(), offsetsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        if (!offsetsFile.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(offsetsFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                int idx = line.indexOf('\t');
+
+                if (idx > 0) {
+                    committedOffsets.put(line.substring(idx + 1), Long.parseLong(line.substring(0, idx)));
+                }
+            }
+        }
+
+        LOG.info("Loaded the offsets of {} spool files from {}", committedOffsets.size(), offsetsFile);
+    }
+}
@@ -0,0 +1,247 @@
+package org.apache.atlas.trino.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the catalogs, schemas and tables an extraction run has completed, so that an interrupted run
+ * can be resumed where it stopped.
+ *
+ * Each run starts with an "R" record holding its scope, and a run that completes ends with an "E" record; in between
+ * there is one "U" record per completed unit. Records are written through a buffer and synced to disk in groups, every
+ * sync interval and on close, so recording a unit costs no disk I/O; a crash loses at most the last interval, whose
+ * units are then redone.
+ */
+public class ProgressJournal {
+    private static final Logger LOG = LoggerFactory.getLogger(ProgressJournal.class);
+
+    private static final char RECORD_RUN  = 'R';
+    private static final char RECORD_UNIT = 'U';
+    private static final char RECORD_END  = 'E';
+    private static final char SEPARATOR   = '\t';
+
+    private final File                     file;
+    private final Set<String>              completedUnits = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService syncTimer;
+
+    private FileOutputStream out;
+    private BufferedWriter   writer;
+    private boolean          dirty;
+
+    public ProgressJournal(File file, long syncIntervalMs) {
+        this.file      = file;
+        this.syncTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "progress-journal-sync");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        this.syncTimer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a run over the given scope. With resume, and when the last run in the journal has the same scope and
+     * did not complete, the units it completed are loaded and the run continues it; otherwise the journal is cleared.
+     * Returns the number of units that can be skipped.
+     */
+    public synchronized int startRun(String scope, boolean resume) throws IOException {
+        completedUnits.clear();
+
+        boolean resuming = resume && loadUnfinishedRun(scope);
+
+        closeWriter();
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        boolean truncatedRecord = resuming && endsWithTruncatedRecord();
+
+        out    = new FileOutputStream(file, resuming);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        if (truncatedRecord) {
+            writer.newLine();
+        }
+
+        if (resuming) {
+            LOG.info("Resuming the interrupted run in {}: {} units already completed", file, completedUnits.size());
+        } else {
+            completedUnits.clear();
+
+            append(RECORD_RUN, scope);
+        }
+
+        sync();
+
+        return completedUnits.size();
+    }
+
+    public boolean isCompleted(String unit) {
+        return completedUnits.contains(unit);
+    }
+
+    public synchronized void completed(String unit) {
+        if (completedUnits.add(unit)) {
+            append(RECORD_UNIT, unit);
+        }
+    }
+
+    /**
+     * Marks the run as complete; a later run with resume starts from scratch.
+     */
+    public synchronized void endRun() throws IOException {
+        append(RECORD_END, "");
+
+        sync();
+
+        completedUnits.clear();
+    }
+
+    public synchronized void sync() throws IOException {
+        if (writer != null && dirty) {
+            writer.flush();
+            out.getChannel().force(false);
+
+            dirty = false;
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        syncTimer.shutdownNow();
+
+        closeWriter();
+    }
+
+    public static String catalogUnit(String catalog) {
+        return catalog;
+    }
+
+    public static String schemaUnit(String catalog, String schema) {
+        return catalog + SEPARATOR + schema;
+    }
+
+    public static String tableUnit(String catalog, String schema, String table) {
+        return catalog + SEPARATOR + schema + SEPARATOR + table;
+    }
+
+    private void append(char record, String value) {
+        try {
+            writer.write(record);
+            writer.write(SEPARATOR);
+            writer.write(value);
+            writer.newLine();
+
+            dirty = true;
+        } catch (IOException e) {
+            LOG.warn("Failed to append to progress journal {}", file, e);
+        }
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            sync();
+
+            writer.close();
+
+            writer = null;
+            out    = null;
+        }
+    }
+
+    private synchronized void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            LOG.warn("Failed to sync progress journal {}", file, e);
+        }
+    }
+
+    private boolean endsWithTruncatedRecord() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() == 0) {
+                return false;
+            }
+
+            raf.seek(raf.length() - 1);
+
+            return raf.read() != '\n';
+        }
+    }
+
+    // loads the units of the last run, if it has the given scope and has no end record
+    private boolean loadUnfinishedRun(String scope) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+
+        String  runScope  = null;
+        boolean ended     = false;
+        boolean truncated = endsWithTruncatedRecord();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String next = reader.readLine();
+
+            while (next != null) {
+                String line = next;
+
+                next = reader.readLine();
+
+                // a last line without a line break is a record cut short by a crash; it may look like a shorter unit
+                if ((next == null && truncated) || line.length() < 2 || line.charAt(1) != SEPARATOR) {
+                    continue;
+                }
+
+                String value = line.substring(2);
+
+                switch (line.charAt(0)) {
+                    case RECORD_RUN:
+                        runScope = value;
+                        ended    = false;
+
+                        completedUnits.clear();
+                        break;
+
+                    case RECORD_UNIT:
+                        completedUnits.add(value);
+                        break;
+
+                    case RECORD_END:
+                        ended = true;
+                        break;
+                }
+            }
+        }
+
+        if (runScope == null || ended || !Objects.equals(runScope, scope)) {
+            if (runScope != null && !ended) {
+                LOG.info("Not resuming the interrupted run in {}: its scope '{}' differs from '{}'", file, runScope, scope);
+            }
+
+            completedUnits.clear();
+
+            return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,173 @@
+package org.apache.atlas.trino.store;
+
+import org.apache.atlas.trino.model.TrinoColumn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a 64-bit fingerprint of the columns of every table written to Atlas, keyed by the table's qualifiedName, and
+ * persists it in a tab separated file between runs.
+ */
+public class TableFingerprintStore {
+    private static final Logger LOG = LoggerFactory.getLogger(TableFingerprintStore.class);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME        = 0x100000001b3L;
+
+    // mixed in like characters, but outside the char range so that no string hashes like a null or a separator
+    private static final int NULL_MARKER = 0x10000;
+    private static final int SEPARATOR   = 0x10001;
+
+    private static final Comparator<TrinoColumn> BY_NAME = Comparator.comparing(TrinoColumn::getName);
+
+    private final File              file;
+    private final Map<String, Long> fingerprints = new ConcurrentHashMap<>();
+
+    public TableFingerprintStore(File file) throws IOException {
+        this.file = file;
+
+        load();
+    }
+
+    public boolean isUnchanged(String qualifiedName, long fingerprint) {
+        Long previous = fingerprints.get(qualifiedName);
+
+        return previous != null && previous == fingerprint;
+    }
+
+    public void update(String qualifiedName, long fingerprint) {
+        fingerprints.put(qualifiedName, fingerprint);
+    }
+
+    public void remove(String qualifiedName) {
+        fingerprints.remove(qualifiedName);
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    public synchronized void save() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : fingerprints.entrySet()) {
+                writer.write(Long.toHexString(entry.getValue()));
+                writer.write('\t');
+                writer.write(entry.getKey());
+                writer.newLine();
+            }
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOG.info("Saved {} table fingerprints to {}", fingerprints.size(), file);
+    }
+
+    /**
+     * FNV-1a hash over the name, data type, ordinal position, nullability and default of every column, taken in
+     * column name order so that the result doesn't depend on the order in which Trino returned the columns.
+     */
+    public static long fingerprint(List<TrinoColumn> columns) {
+        long          ret    = FNV_OFFSET_BASIS;
+        TrinoColumn[] sorted = columns.toArray(new TrinoColumn[0]);
+
+        Arrays.sort(sorted, BY_NAME);
+
+        for (TrinoColumn column : sorted) {
+            Boolean nullable = column.isNullable();
+
+            ret = hash(ret, column.getName());
+            ret = hash(ret, column.getDataType());
+            ret = hash(ret, column.getOrdinalPosition());
+            ret = hash(ret, nullable == null ? null : nullable ? "true" : "false");
+            ret = hash(ret, column.getDefaultValue());
+        }
+
+        return ret;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            hash ^= NULL_MARKER;
+            hash *= FNV_PRIME;
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+        }
+
+        return separate(hash);
+    }
+
+    // hashes the decimal digits of value, like hash(hash, Integer.toString(value)) without creating the string
+    private static long hash(long hash, int value) {
+        if (value < 0) {
+            hash ^= '-';
+            hash *= FNV_PRIME;
+        }
+
+        long abs = Math.abs((long) value);
+        long div = 1;
+
+        while (div * 10 <= abs) {
+            div *= 10;
+        }
+
+        for (; div > 0; div /= 10) {
+            hash ^= '0' + (abs / div) % 10;
+            hash *= FNV_PRIME;
+        }
+
+        return separate(hash);
+    }
+
+    // separator, so that adjacent values can't run into each other
+    private static long separate(long hash) {
+        hash ^= SEPARATOR;
+        hash *= FNV_PRIME;
+
+        return hash;
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            LOG.info("No table fingerprints found at {}; all tables will be written", file);
+
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                int idx = line.indexOf('\t');
+
+                if (idx > 0) {
+                    fingerprints.put(line.substring(idx + 1), Long.parseUnsignedLong(line.substring(0, idx), 16));
+                }
+            }
+        }
+
+        LOG.info("Loaded {} table fingerprints from {}", fingerprints.size(), file);
+    }
+}
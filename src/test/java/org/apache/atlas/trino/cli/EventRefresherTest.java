@@ -0,0 +1,140 @@
+package org.apache.atlas.trino.cli;
+
+import org.apache.atlas.trino.model.MetadataChange;
+import org.apache.atlas.type.AtlasType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventRefresherTest {
+    @Test
+    public void tableNameDefaultsToSessionCatalogAndSchema() {
+        assertEquals(tables("hive.sales.orders"), EventRefresher.toChanges(event("CREATE TABLE orders (id bigint)", "hive", "sales")));
+        assertEquals(tables("hive.sales.orders"), EventRefresher.toChanges(event("drop table sales.orders", "hive", null)));
+        assertEquals(tables("hive.sales.orders"), EventRefresher.toChanges(event("ALTER TABLE hive.sales.orders ADD COLUMN note varchar", null, null)));
+    }
+
+    @Test
+    public void tableWithoutSessionDefaultsIsIgnored() {
+        assertTrue(EventRefresher.toChanges(event("DROP TABLE orders", "hive", null)).isEmpty());
+        assertTrue(EventRefresher.toChanges(event("DROP TABLE sales.orders", null, null)).isEmpty());
+    }
+
+    @Test
+    public void quotedNamesAreUnquoted() {
+        assertEquals(Collections.singletonList(MetadataChange.ofTable("hive", "my.schema", "or\"ders")), EventRefresher.toChanges(event("DROP TABLE \"hive\".\"My.Schema\".\"or\"\"ders\"", null, null)));
+        assertEquals(tables("hive.sales.orders"), EventRefresher.toChanges(event("CREATE TABLE \"Sales\" . \"Orders\" (id bigint)", "hive", null)));
+    }
+
+    @Test
+    public void ifExistsAndIfNotExistsAreSkipped() {
+        assertEquals(tables("hive.sales.orders"), EventRefresher.toChanges(event("CREATE TABLE IF NOT EXISTS sales.orders (id bigint)", "hive", null)));
+        assertEquals(tables("hive.sales.orders"), EventRefresher.toChanges(event("DROP TABLE IF EXISTS sales.orders", "hive", null)));
+        assertEquals(Collections.singletonList(MetadataChange.ofSchema("hive", "sales")), EventRefresher.toChanges(event("CREATE SCHEMA IF NOT EXISTS hive.sales", null, null)));
+    }
+
+    @Test
+    public void viewsAreTableChanges() {
+        assertEquals(tables("hive.sales.v"), EventRefresher.toChanges(event("CREATE OR REPLACE VIEW v AS SELECT 1", "hive", "sales")));
+        assertEquals(tables("hive.sales.mv"), EventRefresher.toChanges(event("DROP MATERIALIZED VIEW sales.mv", "hive", null)));
+    }
+
+    @Test
+    public void renamedTableChangesBothNames() {
+        assertEquals(tables("hive.sales.a", "hive.sales.b"), EventRefresher.toChanges(event("ALTER TABLE hive.sales.a RENAME TO b", null, null)));
+        assertEquals(tables("hive.sales.a", "hive.archive.b"), EventRefresher.toChanges(event("ALTER TABLE a RENAME TO archive.b", "hive", "sales")));
+    }
+
+    @Test
+    public void schemaChanges() {
+        assertEquals(Collections.singletonList(MetadataChange.ofSchema("hive", "sales")), EventRefresher.toChanges(event("DROP SCHEMA sales CASCADE", "hive", null)));
+        assertEquals(Arrays.asList(MetadataChange.ofSchema("hive", "a"), MetadataChange.ofSchema("hive", "b")), EventRefresher.toChanges(event("ALTER SCHEMA hive.a RENAME TO b", null, null)));
+        assertTrue(EventRefresher.toChanges(event("DROP SCHEMA sales", null, null)).isEmpty());
+    }
+
+    @Test
+    public void createTableAsFallsBackToOutput() {
+        Map<String, Object> event  = eventMap("CREATE TABLE /* copy */ orders_copy AS SELECT * FROM orders", "hive", "sales");
+        Map<String, Object> output = new HashMap<>();
+
+        output.put("catalogName", "hive");
+        output.put("schema", "sales");
+        output.put("table", "orders_copy");
+
+        event.put("ioMetadata", Collections.singletonMap("output", output));
+
+        assertEquals(tables("hive.sales.orders_copy"), EventRefresher.toChanges(AtlasType.toJson(event)));
+
+        event.put("metadata", metadata("INSERT INTO orders_copy SELECT * FROM orders", "FINISHED"));
+
+        assertTrue(EventRefresher.toChanges(AtlasType.toJson(event)).isEmpty());
+    }
+
+    @Test
+    public void failedAndOtherQueriesAreIgnored() {
+        Map<String, Object> failed = eventMap("DROP TABLE sales.orders", "hive", null);
+
+        failed.put("failureInfo", Collections.singletonMap("errorCode", "TABLE_NOT_FOUND"));
+
+        assertTrue(EventRefresher.toChanges(AtlasType.toJson(failed)).isEmpty());
+
+        Map<String, Object> running = eventMap("DROP TABLE sales.orders", "hive", null);
+
+        running.put("metadata", metadata("DROP TABLE sales.orders", "RUNNING"));
+
+        assertTrue(EventRefresher.toChanges(AtlasType.toJson(running)).isEmpty());
+        assertTrue(EventRefresher.toChanges(event("SELECT * FROM sales.orders", "hive", null)).isEmpty());
+        assertTrue(EventRefresher.toChanges("{not json").isEmpty());
+    }
+
+    private static List<MetadataChange> tables(String... qualifiedNames) {
+        MetadataChange[] ret = new MetadataChange[qualifiedNames.length];
+
+        for (int i = 0; i < qualifiedNames.length; i++) {
+            String[] parts = qualifiedNames[i].split("\\.");
+
+            ret[i] = MetadataChange.ofTable(parts[0], parts[1], parts[2]);
+        }
+
+        return Arrays.asList(ret);
+    }
+
+    private static String event(String query, String catalog, String schema) {
+        return AtlasType.toJson(eventMap(query, catalog, schema));
+    }
+
+    // a query completed event, as the Trino event listener writes it
+    private static Map<String, Object> eventMap(String query, String catalog, String schema) {
+        Map<String, Object> ret     = new HashMap<>();
+        Map<String, Object> context = new HashMap<>();
+
+        if (catalog != null) {
+            context.put("catalog", catalog);
+        }
+
+        if (schema != null) {
+            context.put("schema", schema);
+        }
+
+        ret.put("metadata", metadata(query, "FINISHED"));
+        ret.put("context", context);
+
+        return ret;
+    }
+
+    private static Map<String, Object> metadata(String query, String queryState) {
+        Map<String, Object> ret = new HashMap<>();
+
+        ret.put("query", query);
+        ret.put("queryState", queryState);
+
+        return ret;
+    }
+}
@@ -0,0 +1,55 @@
+package org.apache.atlas.trino.cli;
+
+import org.junit.Test;
+import org.quartz.CronExpression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrinoExtractorMainTest {
+    @Test
+    public void validCronExpressions() {
+        assertTrue(TrinoExtractorMain.isValidCronExpression("0 0 2 * * *"));
+        assertTrue(TrinoExtractorMain.isValidCronExpression("* * * * * *"));
+        assertTrue(TrinoExtractorMain.isValidCronExpression("0 30 23 31 12 *"));
+        assertTrue(TrinoExtractorMain.isValidCronExpression("0 0 6 * * 0"));
+        assertTrue(TrinoExtractorMain.isValidCronExpression("0 0 6 * 2 7"));
+    }
+
+    @Test
+    public void invalidCronExpressions() {
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 2 * *"));
+        assertFalse(TrinoExtractorMain.isValidCronExpression("60 0 2 * * *"));
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 24 * * *"));
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 2 0 * *"));
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 2 * 13 *"));
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 2 * * 8"));
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 2 ? * *"));
+    }
+
+    @Test
+    public void dayOfMonthAndDayOfWeekTogetherAreRejected() {
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 2 1 * 1"));
+        assertFalse(TrinoExtractorMain.isValidCronExpression("0 0 2 15 6 0"));
+    }
+
+    @Test
+    public void toQuartzCronExpression() {
+        assertEquals("0 0 2 * * ?", TrinoExtractorMain.toQuartzCronExpression("0 0 2 * * *"));
+        assertEquals("0 0 2 15 * ?", TrinoExtractorMain.toQuartzCronExpression("0 0 2 15 * *"));
+        assertEquals("0 0 2 ? * 1", TrinoExtractorMain.toQuartzCronExpression("0 0 2 * * 0"));
+        assertEquals("0 0 2 ? * 1", TrinoExtractorMain.toQuartzCronExpression("0 0 2 * * 7"));
+        assertEquals("0 0 2 ? * 7", TrinoExtractorMain.toQuartzCronExpression("0 0 2 * * 6"));
+    }
+
+    @Test
+    public void quartzAcceptsEveryConvertedExpression() {
+        String[] expressions = { "0 0 2 * * *", "* * * * * *", "0 30 23 31 12 *", "0 0 6 * * 0", "0 0 6 * 2 7", "5 4 3 2 1 *" };
+
+        for (String expression : expressions) {
+            assertTrue(expression, TrinoExtractorMain.isValidCronExpression(expression));
+            assertTrue(expression, CronExpression.isValidExpression(TrinoExtractorMain.toQuartzCronExpression(expression)));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.apache.atlas.trino.client;
+
+import org.apache.atlas.model.instance.AtlasEntity;
+import org.apache.atlas.model.instance.AtlasObjectId;
+import org.apache.atlas.model.instance.AtlasRelatedObjectId;
+import org.apache.atlas.type.AtlasType;
+import org.apache.atlas.type.AtlasTypeUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TableEntityDiffTest {
+    private static final String TABLE_GUID    = "table-guid";
+    private static final String SCHEMA_GUID   = "schema-guid";
+    private static final String TABLE_QN      = "c.s.t@cm";
+    private static final String HIVE_TABLE_QN = "s.t@hive";
+
+    @Test
+    public void unchangedTableIsEmpty() {
+        AtlasEntity.AtlasEntityWithExtInfo stored = storedTable(storedColumn("a-guid", "a", "bigint", 1L));
+
+        TableEntityDiff diff = TableEntityDiff.diff(stored, builtTable(), Collections.singletonList(builtColumn("a", "bigint", 1)));
+
+        assertTrue(diff.isEmpty());
+        assertFalse(diff.isTableChanged());
+    }
+
+    @Test
+    public void numbersCompareByValue() {
+        AtlasEntity.AtlasEntityWithExtInfo stored = storedTable(storedColumn("a-guid", "a", "bigint", 3L));
+
+        assertTrue(TableEntityDiff.diff(stored, builtTable(), Collections.singletonList(builtColumn("a", "bigint", 3))).isEmpty());
+        assertEquals(1, TableEntityDiff.diff(stored, builtTable(), Collections.singletonList(builtColumn("a", "bigint", 4))).getChangedColumns());
+    }
+
+    @Test
+    public void changedColumnIsSentAsPartialUpdate() {
+        AtlasEntity.AtlasEntityWithExtInfo stored = storedTable(storedColumn("a-guid", "a", "varchar", 1L));
+
+        TableEntityDiff diff = TableEntityDiff.diff(stored, builtTable(), Collections.singletonList(builtColumn("a", "bigint", 1)));
+
+        assertEquals(1, diff.getChangedColumns());
+        assertEquals(1, diff.getUpdatedEntities().size());
+
+        AtlasEntity update = diff.getUpdatedEntities().get(0);
+
+        assertEquals("a-guid", update.getGuid());
+        assertEquals(columnQualifiedName("a"), update.getAttribute("qualifiedName"));
+        assertEquals("bigint", update.getAttribute("data_type"));
+        assertNull(update.getAttribute("name"));
+        assertNull(update.getRelationshipAttributes());
+    }
+
+    @Test
+    public void addedColumnIsSentWholeAndRemovedColumnIsDeleted() {
+        AtlasEntity.AtlasEntityWithExtInfo stored = storedTable(storedColumn("a-guid", "a", "bigint", 1L), storedColumn("b-guid", "b", "bigint", 2L));
+        AtlasEntity                        added  = builtColumn("c", "varchar", 2);
+
+        TableEntityDiff diff = TableEntityDiff.diff(stored, builtTable(), Arrays.asList(builtColumn("a", "bigint", 1), added));
+
+        assertEquals(1, diff.getAddedColumns());
+        assertEquals(Collections.singletonList(added), diff.getUpdatedEntities());
+        assertEquals(Collections.singletonList("b-guid"), diff.getRemovedColumnGuids());
+    }
+
+    @Test
+    public void deletedStoredColumnIsNotRemovedAgain() {
+        AtlasEntity deleted = storedColumn("b-guid", "b", "bigint", 2L);
+
+        deleted.setStatus(AtlasEntity.Status.DELETED);
+
+        TableEntityDiff diff = TableEntityDiff.diff(storedTable(deleted), builtTable(), Collections.singletonList(builtColumn("b", "bigint", 2)));
+
+        assertEquals(1, diff.getAddedColumns());
+        assertTrue(diff.getRemovedColumnGuids().isEmpty());
+    }
+
+    @Test
+    public void changedTableAttributeIsSent() {
+        AtlasEntity table = builtTable();
+
+        table.setAttribute("type", "VIEW");
+
+        TableEntityDiff diff = TableEntityDiff.diff(storedTable(), table, Collections.emptyList());
+
+        assertTrue(diff.isTableChanged());
+        assertEquals(TABLE_GUID, diff.getUpdatedEntities().get(0).getGuid());
+        assertEquals("VIEW", diff.getUpdatedEntities().get(0).getAttribute("type"));
+    }
+
+    @Test
+    public void linksBetweenTableAndColumnsAreIgnored() {
+        AtlasEntity table = builtTable();
+
+        table.setRelationshipAttribute("columns", Collections.singletonList(new AtlasRelatedObjectId(new AtlasObjectId("a-other-guid", AtlasClientHelper.TRINO_COLUMN), "trino_table_columns")));
+
+        TableEntityDiff diff = TableEntityDiff.diff(storedTable(storedColumn("a-guid", "a", "bigint", 1L)), table, Collections.singletonList(builtColumn("a", "bigint", 1)));
+
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void connectorLinkMatchedByReferredEntity() {
+        AtlasEntity table = builtTable();
+
+        table.setRelationshipAttribute("hive_table", hiveTableReference(HIVE_TABLE_QN));
+
+        assertTrue(TableEntityDiff.diff(storedTable(hiveTable("hive-guid", HIVE_TABLE_QN, null)), table, Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void changedConnectorLinkIsResent() {
+        AtlasEntity table = builtTable();
+
+        table.setRelationshipAttribute("hive_table", hiveTableReference(HIVE_TABLE_QN));
+
+        TableEntityDiff diff = TableEntityDiff.diff(storedTable(hiveTable("hive-guid", "s.other@hive", null)), table, Collections.emptyList());
+
+        assertTrue(diff.isTableChanged());
+        assertTrue(diff.getUpdatedEntities().get(0).getRelationshipAttributes().containsKey("hive_table"));
+    }
+
+    @Test
+    public void deletedConnectorLinkIsResent() {
+        AtlasEntity table = builtTable();
+
+        table.setRelationshipAttribute("hive_table", hiveTableReference(HIVE_TABLE_QN));
+
+        assertTrue(TableEntityDiff.diff(storedTable(hiveTable("hive-guid", HIVE_TABLE_QN, AtlasEntity.Status.DELETED)), table, Collections.emptyList()).isTableChanged());
+    }
+
+    @Test
+    public void missingConnectorLinkIsResent() {
+        AtlasEntity table = builtTable();
+
+        table.setRelationshipAttribute("hive_table", hiveTableReference(HIVE_TABLE_QN));
+
+        assertTrue(TableEntityDiff.diff(storedTable(), table, Collections.emptyList()).isTableChanged());
+    }
+
+    @Test
+    public void relationshipsNotReturnedAreAssumedInPlace() {
+        AtlasEntity table = builtTable();
+
+        table.setRelationshipAttribute("hive_table", hiveTableReference(HIVE_TABLE_QN));
+
+        AtlasEntity.AtlasEntityWithExtInfo stored = storedTable();
+
+        stored.getEntity().setRelationshipAttributes(null);
+
+        assertTrue(TableEntityDiff.diff(stored, table, Collections.emptyList()).isEmpty());
+    }
+
+    private static AtlasEntity builtTable() {
+        AtlasEntity ret = new AtlasEntity(AtlasClientHelper.TRINO_TABLE);
+
+        ret.setGuid(TABLE_GUID);
+        ret.setAttribute("qualifiedName", TABLE_QN);
+        ret.setAttribute("name", "t");
+        ret.setAttribute("type", "BASE_TABLE");
+        ret.setRelationshipAttribute("schema", new AtlasRelatedObjectId(new AtlasObjectId(SCHEMA_GUID, AtlasClientHelper.TRINO_SCHEMA), "trino_table_schema"));
+
+        return ret;
+    }
+
+    private static AtlasEntity builtColumn(String name, String dataType, int position) {
+        AtlasEntity ret = new AtlasEntity(AtlasClientHelper.TRINO_COLUMN);
+
+        ret.setAttribute("qualifiedName", columnQualifiedName(name));
+        ret.setAttribute("name", name);
+        ret.setAttribute("data_type", dataType);
+        ret.setAttribute("position", position);
+        ret.setAttribute("isNullable", true);
+        ret.setRelationshipAttribute("table", new AtlasRelatedObjectId(new AtlasObjectId(TABLE_GUID, AtlasClientHelper.TRINO_TABLE), "trino_table_columns"));
+
+        return ret;
+    }
+
+    private static AtlasEntity storedColumn(String guid, String name, String dataType, long position) {
+        AtlasEntity ret = new AtlasEntity(AtlasClientHelper.TRINO_COLUMN);
+
+        ret.setGuid(guid);
+        ret.setStatus(AtlasEntity.Status.ACTIVE);
+        ret.setAttribute("qualifiedName", columnQualifiedName(name));
+        ret.setAttribute("name", name);
+        ret.setAttribute("data_type", dataType);
+        ret.setAttribute("position", position);
+        ret.setAttribute("isNullable", true);
+        ret.setRelationshipAttribute("table", reference(TABLE_GUID, AtlasClientHelper.TRINO_TABLE, null));
+
+        return ret;
+    }
+
+    private static AtlasEntity hiveTable(String guid, String qualifiedName, AtlasEntity.Status status) {
+        AtlasEntity ret = new AtlasEntity("hive_table");
+
+        ret.setGuid(guid);
+        ret.setStatus(status == null ? AtlasEntity.Status.ACTIVE : status);
+        ret.setAttribute("qualifiedName", qualifiedName);
+
+        return ret;
+    }
+
+    // as HiveEntityConnector builds it, for a hive_table created along with the trino_table
+    private static AtlasRelatedObjectId hiveTableReference(String qualifiedName) {
+        AtlasEntity hiveTable = new AtlasEntity("hive_table");
+
+        hiveTable.setAttribute("qualifiedName", qualifiedName);
+
+        return AtlasTypeUtil.getAtlasRelatedObjectId(hiveTable, "trino_schema_hive_table");
+    }
+
+    /**
+     * The stored table as read from Atlas, with its columns and the entities related by other than columns as referred
+     * entities; it goes through JSON, so that the relationship attributes are maps as they are when read from Atlas.
+     */
+    private static AtlasEntity.AtlasEntityWithExtInfo storedTable(AtlasEntity... referred) {
+        AtlasEntity table = new AtlasEntity(AtlasClientHelper.TRINO_TABLE);
+
+        table.setGuid(TABLE_GUID);
+        table.setStatus(AtlasEntity.Status.ACTIVE);
+        table.setAttribute("qualifiedName", TABLE_QN);
+        table.setAttribute("name", "t");
+        table.setAttribute("type", "BASE_TABLE");
+        table.setRelationshipAttributes(new HashMap<>());
+        table.setRelationshipAttribute("schema", reference(SCHEMA_GUID, AtlasClientHelper.TRINO_SCHEMA, null));
+
+        AtlasEntity.AtlasEntityWithExtInfo ret     = new AtlasEntity.AtlasEntityWithExtInfo(table);
+        List<Map<String, Object>>          columns = new ArrayList<>();
+
+        for (AtlasEntity entity : referred) {
+            ret.addReferredEntity(entity);
+
+            if (AtlasClientHelper.TRINO_COLUMN.equals(entity.getTypeName())) {
+                columns.add(reference(entity.getGuid(), entity.getTypeName(), entity.getStatus()));
+            } else {
+                table.setRelationshipAttribute(entity.getTypeName(), reference(entity.getGuid(), entity.getTypeName(), entity.getStatus()));
+            }
+        }
+
+        table.setRelationshipAttribute("columns", columns);
+
+        return AtlasType.fromJson(AtlasType.toJson(ret), AtlasEntity.AtlasEntityWithExtInfo.class);
+    }
+
+    // a related object id as Atlas returns it, without unique attributes
+    private static Map<String, Object> reference(String guid, String typeName, AtlasEntity.Status status) {
+        Map<String, Object> ret = new HashMap<>();
+
+        ret.put("guid", guid);
+        ret.put("typeName", typeName);
+        ret.put("entityStatus", status == null ? "ACTIVE" : status.name());
+        ret.put("relationshipStatus", "ACTIVE");
+
+        return ret;
+    }
+
+    private static String columnQualifiedName(String column) {
+        return "c.s.t." + column + "@cm";
+    }
+}
@@ -0,0 +1,53 @@
+package org.apache.atlas.trino.store;
+
+import org.apache.atlas.trino.model.TrinoColumn;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TableFingerprintStoreTest {
+    @Test
+    public void columnOrderDoesNotMatter() {
+        TrinoColumn a = new TrinoColumn("a", "bigint", 1, null, "YES");
+        TrinoColumn b = new TrinoColumn("b", "varchar", 2, null, "NO");
+
+        assertEquals(TableFingerprintStore.fingerprint(Arrays.asList(a, b)), TableFingerprintStore.fingerprint(Arrays.asList(b, a)));
+    }
+
+    @Test
+    public void nullDefaultDiffersFromEmptyDefault() {
+        assertNotEquals(fingerprint("a", "bigint", 1, null, "YES"), fingerprint("a", "bigint", 1, "", "YES"));
+    }
+
+    @Test
+    public void unknownNullabilityDiffersFromKnown() {
+        assertNotEquals(fingerprint("a", "bigint", 1, null, null), fingerprint("a", "bigint", 1, null, "YES"));
+        assertNotEquals(fingerprint("a", "bigint", 1, null, null), fingerprint("a", "bigint", 1, null, "NO"));
+    }
+
+    @Test
+    public void adjacentValuesDoNotRunIntoEachOther() {
+        assertNotEquals(fingerprint("ab", "c", 1, null, "YES"), fingerprint("a", "bc", 1, null, "YES"));
+        assertNotEquals(fingerprint("a\u00ff", "b", 1, null, "YES"), fingerprint("a", "\u00ffb", 1, null, "YES"));
+    }
+
+    @Test
+    public void everyAttributeIsHashed() {
+        long fingerprint = fingerprint("a", "bigint", 1, null, "YES");
+
+        assertNotEquals(fingerprint, fingerprint("b", "bigint", 1, null, "YES"));
+        assertNotEquals(fingerprint, fingerprint("a", "integer", 1, null, "YES"));
+        assertNotEquals(fingerprint, fingerprint("a", "bigint", 2, null, "YES"));
+        assertNotEquals(fingerprint, fingerprint("a", "bigint", -1, null, "YES"));
+        assertNotEquals(fingerprint, fingerprint("a", "bigint", 1, "0", "YES"));
+        assertNotEquals(fingerprint, fingerprint("a", "bigint", 1, null, "NO"));
+    }
+
+    private static long fingerprint(String name, String dataType, int ordinalPosition, String defaultValue, String isNullable) {
+        return TableFingerprintStore.fingerprint(Collections.singletonList(new TrinoColumn(name, dataType, ordinalPosition, defaultValue, isNullable)));
+    }
+}